@@ -0,0 +1,215 @@
+package com.github.forax.framework.mapper;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A compact binary encoding (CBOR-like) of the JSON data model,
+ * used by {@link JSONWriter#toBinary(Object, boolean)} and {@link JSONReader#parseBinary(byte[], java.lang.reflect.Type)}.
+ *
+ * Each value starts with a tag byte, the numbers are stored as fixed width big endian values,
+ * the strings as a length followed by the UTF-8 bytes, the arrays and the objects as a count followed by
+ * the elements or the entries. An entry is either a key (as a string) or the index of the property in the
+ * class, followed by the value.
+ * The lengths, the counts and the indices are stored as variable length unsigned ints (LEB128).
+ */
+final class Binary {
+  private Binary() {
+    throw new AssertionError();
+  }
+
+  static final byte NULL = 0;
+  static final byte FALSE = 1;
+  static final byte TRUE = 2;
+  static final byte INT = 3;
+  static final byte LONG = 4;
+  static final byte FLOAT = 5;
+  static final byte DOUBLE = 6;
+  static final byte CHAR = 7;
+  static final byte STRING = 8;
+  static final byte ARRAY = 9;
+  static final byte OBJECT = 10;
+  static final byte INDEXED_OBJECT = 11;
+
+  private static final VarHandle SHORT_VIEW = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle INT_VIEW = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+  static final class Output {
+    private byte[] buffer = BufferPool.BYTES.acquire(BufferPool.MIN_CAPACITY);
+    private int length;
+
+    private void ensureCapacity(int additional) {
+      if (length + additional <= buffer.length) {
+        return;
+      }
+      var newBuffer = BufferPool.BYTES.acquire(Math.max(buffer.length << 1, length + additional));
+      System.arraycopy(buffer, 0, newBuffer, 0, length);
+      BufferPool.BYTES.release(buffer);
+      buffer = newBuffer;
+    }
+
+    void writeTag(byte tag) {
+      ensureCapacity(1);
+      buffer[length++] = tag;
+    }
+
+    void writeLength(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[length++] = (byte) value;
+    }
+
+    void writeInt(int value) {
+      ensureCapacity(1 + Integer.BYTES);
+      buffer[length] = INT;
+      INT_VIEW.set(buffer, length + 1, value);
+      length += 1 + Integer.BYTES;
+    }
+
+    void writeLong(long value) {
+      ensureCapacity(1 + Long.BYTES);
+      buffer[length] = LONG;
+      LONG_VIEW.set(buffer, length + 1, value);
+      length += 1 + Long.BYTES;
+    }
+
+    void writeFloat(float value) {
+      ensureCapacity(1 + Float.BYTES);
+      buffer[length] = FLOAT;
+      INT_VIEW.set(buffer, length + 1, Float.floatToRawIntBits(value));
+      length += 1 + Float.BYTES;
+    }
+
+    void writeDouble(double value) {
+      ensureCapacity(1 + Double.BYTES);
+      buffer[length] = DOUBLE;
+      LONG_VIEW.set(buffer, length + 1, Double.doubleToRawLongBits(value));
+      length += 1 + Double.BYTES;
+    }
+
+    void writeChar(char value) {
+      ensureCapacity(1 + Character.BYTES);
+      buffer[length] = CHAR;
+      SHORT_VIEW.set(buffer, length + 1, (short) value);
+      length += 1 + Character.BYTES;
+    }
+
+    void writeString(String value) {
+      writeTag(STRING);
+      writeUTF8(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes the length and the bytes of a string already encoded in UTF-8, without the tag.
+     */
+    void writeUTF8(byte[] utf8) {
+      writeLength(utf8.length);
+      ensureCapacity(utf8.length);
+      System.arraycopy(utf8, 0, buffer, length, utf8.length);
+      length += utf8.length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+
+    void release() {
+      var buffer = this.buffer;
+      if (buffer != null) {
+        this.buffer = null;
+        BufferPool.BYTES.release(buffer);
+      }
+    }
+  }
+
+  static final class Input {
+    private final byte[] data;
+    private int position;
+
+    Input(byte[] data) {
+      this.data = data;
+    }
+
+    boolean hasRemaining() {
+      return position < data.length;
+    }
+
+    private void check(int size) {
+      if (position + size > data.length) {
+        throw new IllegalStateException("truncated data at " + position);
+      }
+    }
+
+    byte readTag() {
+      check(1);
+      return data[position++];
+    }
+
+    /**
+     * Reads an unsigned LEB128 int, at most 5 bytes, the last byte can only use 3 bits
+     * because a length is a positive int.
+     */
+    int readLength() {
+      var value = 0;
+      for (var shift = 0; shift < 28; shift += 7) {
+        var b = readTag();
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      var b = readTag();
+      if ((b & ~0x07) != 0) {  // continuation bit or overflow
+        throw new IllegalStateException("invalid length at " + position);
+      }
+      return value | b << 28;
+    }
+
+    int readInt() {
+      check(Integer.BYTES);
+      var value = (int) INT_VIEW.get(data, position);
+      position += Integer.BYTES;
+      return value;
+    }
+
+    long readLong() {
+      check(Long.BYTES);
+      var value = (long) LONG_VIEW.get(data, position);
+      position += Long.BYTES;
+      return value;
+    }
+
+    float readFloat() {
+      return Float.intBitsToFloat(readInt());
+    }
+
+    double readDouble() {
+      return Double.longBitsToDouble(readLong());
+    }
+
+    char readChar() {
+      check(Character.BYTES);
+      var value = (char) (short) SHORT_VIEW.get(data, position);
+      position += Character.BYTES;
+      return value;
+    }
+
+    /**
+     * Reads the length and the bytes of a string, without the tag.
+     */
+    String readUTF8() {
+      var length = readLength();
+      check(length);
+      var value = new String(data, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+  }
+}
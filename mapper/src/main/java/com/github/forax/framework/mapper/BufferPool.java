@@ -0,0 +1,115 @@
+package com.github.forax.framework.mapper;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * A bounded lock-free pool of buffers (arrays) organized by size classes.
+ *
+ * The size classes are the powers of two between {@link #MIN_CAPACITY} and {@link #MAX_CAPACITY},
+ * the smaller classes have more slots than the bigger ones, so the memory retained by a pool is bounded.
+ * A buffer bigger than {@link #MAX_CAPACITY} is never pooled.
+ *
+ * This class does not use a {@link ThreadLocal} nor a lock, so it works with any number of
+ * (virtual) threads, a thread starts to look for a buffer at a slot that depends on its id
+ * to avoid contention.
+ *
+ * @param <T> the type of the buffers.
+ */
+final class BufferPool<T> {
+  static final int MIN_CAPACITY = 8_192;
+  static final int MAX_CAPACITY = 1 << 20;
+
+  private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_CAPACITY);
+  private static final int CLASS_COUNT = Integer.numberOfTrailingZeros(MAX_CAPACITY) - MIN_SHIFT + 1;
+  private static final int MAX_SLOTS = 64;
+  private static final int MIN_SLOTS = 2;
+
+  static final BufferPool<char[]> CHARS = new BufferPool<>(char[]::new, buffer -> buffer.length);
+  static final BufferPool<byte[]> BYTES = new BufferPool<>(byte[]::new, buffer -> buffer.length);
+
+  private final IntFunction<T> allocator;
+  private final ToIntFunction<T> capacity;
+  private final int[] offsets = new int[CLASS_COUNT + 1];
+  private final AtomicReferenceArray<T> slots;
+
+  BufferPool(IntFunction<T> allocator, ToIntFunction<T> capacity) {
+    this.allocator = allocator;
+    this.capacity = capacity;
+    for (var i = 0; i < CLASS_COUNT; i++) {
+      offsets[i + 1] = offsets[i] + slotCount(i);
+    }
+    this.slots = new AtomicReferenceArray<>(offsets[CLASS_COUNT]);
+  }
+
+  private static int slotCount(int sizeClass) {
+    return Math.max(MIN_SLOTS, MAX_SLOTS >> sizeClass);
+  }
+
+  /**
+   * Returns the index of the smallest size class able to store {@code capacity} elements,
+   * {@code CLASS_COUNT} if the capacity is too big.
+   */
+  private static int sizeClass(int capacity) {
+    if (capacity <= MIN_CAPACITY) {
+      return 0;
+    }
+    if (capacity > MAX_CAPACITY) {
+      return CLASS_COUNT;
+    }
+    return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+  }
+
+  private static int start(int slotCount) {
+    return (int) (Thread.currentThread().threadId() % slotCount);
+  }
+
+  /**
+   * Returns a buffer with at least {@code minCapacity} elements, either from the pool or newly allocated.
+   * @param minCapacity the minimum capacity of the buffer.
+   * @return a buffer with at least {@code minCapacity} elements.
+   */
+  T acquire(int minCapacity) {
+    var sizeClass = sizeClass(minCapacity);
+    if (sizeClass == CLASS_COUNT) {
+      return allocator.apply(minCapacity);
+    }
+    var offset = offsets[sizeClass];
+    var slotCount = offsets[sizeClass + 1] - offset;
+    var start = start(slotCount);
+    for (var i = 0; i < slotCount; i++) {
+      var index = offset + (start + i) % slotCount;
+      if (slots.getPlain(index) != null) {  // avoid the write if the slot is empty
+        var buffer = slots.getAndSet(index, null);
+        if (buffer != null) {
+          return buffer;
+        }
+      }
+    }
+    return allocator.apply(MIN_CAPACITY << sizeClass);
+  }
+
+  /**
+   * Gives back a buffer to the pool, the buffer is dropped if the pool is full or if it's too big.
+   * The buffer should not be used after this call.
+   * @param buffer the buffer to give back.
+   */
+  void release(T buffer) {
+    var bufferCapacity = capacity.applyAsInt(buffer);
+    if (bufferCapacity < MIN_CAPACITY || bufferCapacity > MAX_CAPACITY) {
+      return;
+    }
+    // the size class that the buffer can fully serve
+    var sizeClass = 31 - Integer.numberOfLeadingZeros(bufferCapacity) - MIN_SHIFT;
+    var offset = offsets[sizeClass];
+    var slotCount = offsets[sizeClass + 1] - offset;
+    var start = start(slotCount);
+    for (var i = 0; i < slotCount; i++) {
+      var index = offset + (start + i) % slotCount;
+      if (slots.getPlain(index) == null && slots.compareAndSet(index, null, buffer)) {
+        return;
+      }
+    }
+  }
+}
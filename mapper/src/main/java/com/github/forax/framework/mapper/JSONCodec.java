@@ -0,0 +1,29 @@
+package com.github.forax.framework.mapper;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Asks the {@link JSONCodecProcessor annotation processor} to generate at compile time
+ * the code to write and read the annotated bean or record.
+ * If the generated class is present at runtime, {@link JSONWriter} and {@link JSONReader} use it
+ * instead of the bean introspection and the reflection.
+ */
+@Retention(RUNTIME)
+@Target(TYPE)
+public @interface JSONCodec {
+
+  /**
+   * Interface implemented by the classes generated by the annotation processor.
+   */
+  interface Codec extends JSONWriter.Generator {
+    /**
+     * Returns the object builder used by {@link JSONReader} to create an instance of the annotated type.
+     * @return the object builder used by {@link JSONReader} to create an instance of the annotated type.
+     */
+    JSONReader.ObjectBuilder<?> objectBuilder();
+  }
+}
@@ -0,0 +1,378 @@
+package com.github.forax.framework.mapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.beans.Introspector;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Annotation processor that generates, for each type annotated with {@link JSONCodec},
+ * a class implementing {@link JSONCodec.Codec} that calls the getters, the setters or the canonical
+ * constructor directly.
+ *
+ * The generated code follows the same rules as the reflective code of {@link JSONWriter} and {@link JSONReader},
+ * the keys written are the ones of {@link JSONProperty} if present, the keys read are the property names.
+ */
+@SupportedAnnotationTypes("com.github.forax.framework.mapper.JSONCodec")
+public final class JSONCodecProcessor extends AbstractProcessor {
+  private record Property(String name, String key, TypeMirror type, String getter, String setter, int index) {}
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (var element : roundEnv.getElementsAnnotatedWith(JSONCodec.class)) {
+      if (!isSupported(element)) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+            "@JSONCodec requires a non private top level or static member class or record", element);
+        continue;
+      }
+      var type = (TypeElement) element;
+      try {
+        generate(type);
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not generate the codec " + e.getMessage(), element);
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSupported(Element element) {
+    if (element.getKind() != ElementKind.CLASS && element.getKind() != ElementKind.RECORD) {
+      return false;
+    }
+    var type = (TypeElement) element;
+    return switch (type.getNestingKind()) {
+      case TOP_LEVEL -> true;
+      case MEMBER -> (type.getKind() == ElementKind.RECORD || type.getModifiers().contains(Modifier.STATIC))
+          && isAccessible(type);
+      case LOCAL, ANONYMOUS -> false;
+    };
+  }
+
+  private static boolean isAccessible(TypeElement type) {
+    return switch (type.getNestingKind()) {
+      case TOP_LEVEL -> true;
+      case MEMBER -> !type.getModifiers().contains(Modifier.PRIVATE) && isAccessible((TypeElement) type.getEnclosingElement());
+      case LOCAL, ANONYMOUS -> false;
+    };
+  }
+
+  private static String key(Element element, String name) {
+    var annotation = element.getAnnotation(JSONProperty.class);
+    return annotation != null ? annotation.value() : name;
+  }
+
+  private List<Property> recordProperties(TypeElement type) {
+    var components = type.getRecordComponents();
+    var properties = new ArrayList<Property>();
+    for (var i = 0; i < components.size(); i++) {
+      var component = components.get(i);
+      var name = component.getSimpleName().toString();
+      properties.add(new Property(name, key(component, name), component.asType(), name, null, i));
+    }
+    return properties;
+  }
+
+  private List<Property> beanProperties(TypeElement type) {
+    // same rules as the Introspector, the properties are sorted by name
+    var getters = new TreeMap<String, ExecutableElement>();
+    var setters = new TreeMap<String, ExecutableElement>();
+    for (var method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+      var modifiers = method.getModifiers();
+      if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)
+          || ((TypeElement) method.getEnclosingElement()).getQualifiedName().contentEquals("java.lang.Object")) {
+        continue;
+      }
+      var methodName = method.getSimpleName().toString();
+      var parameterCount = method.getParameters().size();
+      var returnKind = method.getReturnType().getKind();
+      if (methodName.startsWith("get") && methodName.length() > 3 && parameterCount == 0 && returnKind != TypeKind.VOID) {
+        getters.put(Introspector.decapitalize(methodName.substring(3)), method);
+      } else if (methodName.startsWith("is") && methodName.length() > 2 && parameterCount == 0 && returnKind == TypeKind.BOOLEAN) {
+        getters.put(Introspector.decapitalize(methodName.substring(2)), method);
+      } else if (methodName.startsWith("set") && methodName.length() > 3 && parameterCount == 1 && returnKind == TypeKind.VOID) {
+        setters.put(Introspector.decapitalize(methodName.substring(3)), method);
+      }
+    }
+    var types = processingEnv.getTypeUtils();
+    var names = new TreeMap<String, Property>();
+    for (var entry : getters.entrySet()) {
+      var name = entry.getKey();
+      var getter = entry.getValue();
+      var setter = setters.get(name);
+      if (setter != null && !types.isSameType(setter.getParameters().get(0).asType(), getter.getReturnType())) {
+        setter = null;
+      }
+      names.put(name, new Property(name, key(getter, name), getter.getReturnType(), getter.getSimpleName().toString(),
+          setter == null ? null : setter.getSimpleName().toString(), -1));
+    }
+    for (var entry : setters.entrySet()) {
+      var name = entry.getKey();
+      var setter = entry.getValue();
+      names.putIfAbsent(name, new Property(name, name, setter.getParameters().get(0).asType(), null, setter.getSimpleName().toString(), -1));
+    }
+    return List.copyOf(names.values());
+  }
+
+  private boolean hasPublicDefaultConstructor(TypeElement type) {
+    return ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+        .anyMatch(constructor -> constructor.getModifiers().contains(Modifier.PUBLIC) && constructor.getParameters().isEmpty());
+  }
+
+  private void generate(TypeElement type) throws IOException {
+    var elements = processingEnv.getElementUtils();
+    var binaryName = elements.getBinaryName(type).toString();
+    var codecName = Utils.codecName(binaryName);
+    var packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    var simpleName = codecName.substring(codecName.lastIndexOf('.') + 1);
+    var typeName = type.getQualifiedName().toString();
+    var isRecord = type.getKind() == ElementKind.RECORD;
+    var properties = isRecord ? recordProperties(type) : beanProperties(type);
+
+    var code = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      code.append("package ").append(packageName).append(";\n\n");
+    }
+    code.append("""
+        @javax.annotation.processing.Generated("com.github.forax.framework.mapper.JSONCodecProcessor")
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public final class %s implements com.github.forax.framework.mapper.JSONCodec.Codec {
+          public %s() {}
+
+        """.formatted(simpleName, simpleName));
+    generateWriter(code, typeName, properties);
+    generateGenericTypes(code, typeName, isRecord, properties);
+    if (isRecord) {
+      generateRecordBuilder(code, typeName, properties);
+    } else {
+      generateBeanBuilder(code, typeName, hasPublicDefaultConstructor(type), properties);
+    }
+    code.append("}\n");
+
+    try (var writer = processingEnv.getFiler().createSourceFile(codecName, type).openWriter()) {
+      writer.write(code.toString());
+    }
+  }
+
+  private static void generateWriter(StringBuilder code, String typeName, List<Property> properties) {
+    code.append("""
+          @Override
+          public void generate(com.github.forax.framework.mapper.JSONWriter writer, Object bean, com.github.forax.framework.mapper.JSONOutput out) {
+            var value = (%s) bean;
+            out.append('{');
+        """.formatted(typeName));
+    var separator = "";
+    for (var property : properties) {
+      if (property.getter == null) {
+        continue;
+      }
+      code.append("    out.append(").append(javaString(separator + JSONOutput.quote(property.key) + ": ")).append(");\n");
+      var getterCall = "value." + property.getter + "()";
+      code.append("    ").append(switch (property.type.getKind()) {
+        case INT, SHORT, BYTE -> "out.appendInt(" + getterCall + ")";
+        case LONG -> "out.appendLong(" + getterCall + ")";
+        case FLOAT -> "out.appendFloat(" + getterCall + ")";
+        case DOUBLE -> "out.appendDouble(" + getterCall + ")";
+        case BOOLEAN -> "out.appendBoolean(" + getterCall + ")";
+        default -> "writer.toJSON(" + getterCall + ", out)";
+      }).append(";\n");
+      separator = ", ";
+    }
+    code.append("""
+            out.append('}');
+          }
+
+        """);
+  }
+
+  private boolean isGeneric(TypeMirror type) {
+    var types = processingEnv.getTypeUtils();
+    return !types.isSameType(type, types.erasure(type));
+  }
+
+  private void generateGenericTypes(StringBuilder code, String typeName, boolean isRecord, List<Property> properties) {
+    // generic types are only available by reflection, they are computed once when the codec is loaded
+    for (var property : properties) {
+      if ((isRecord || property.setter != null) && isGeneric(property.type)) {
+        var expression = isRecord
+            ? typeName + ".class.getRecordComponents()[" + property.index + "].getGenericType()"
+            : "setterType(" + javaString(property.setter) + ", " + erasure(property.type) + ".class)";
+        code.append("  private static final java.lang.reflect.Type TYPE_").append(property.name)
+            .append(" = ").append(expression).append(";\n");
+      }
+    }
+    if (!isRecord) {
+      code.append("""
+
+            private static java.lang.reflect.Type setterType(String name, Class<?> parameterType) {
+              try {
+                return %s.class.getMethod(name, parameterType).getGenericParameterTypes()[0];
+              } catch (NoSuchMethodException e) {
+                throw (NoSuchMethodError) new NoSuchMethodError(name).initCause(e);
+              }
+            }
+          """.formatted(typeName));
+    }
+    code.append("\n");
+  }
+
+  private String typeExpression(Property property) {
+    return isGeneric(property.type) ? "TYPE_" + property.name : erasure(property.type) + ".class";
+  }
+
+  private String erasure(TypeMirror type) {
+    return processingEnv.getTypeUtils().erasure(type).toString();
+  }
+
+  private String conversion(TypeMirror type, String expression) {
+    return switch (type.getKind()) {
+      case BOOLEAN -> "(" + expression + " != null && (Boolean) " + expression + ")";
+      case CHAR -> "(" + expression + " == null ? '\\0' : (Character) " + expression + ")";
+      case INT, LONG, SHORT, BYTE, FLOAT, DOUBLE ->
+          "(" + expression + " == null ? 0 : ((Number) " + expression + ")." + type.getKind().name().toLowerCase() + "Value())";
+      default -> "(" + erasure(type) + ") " + expression;
+    };
+  }
+
+  private static String unknownKey(String typeName) {
+    return "default -> throw new IllegalStateException(\"unknown key \" + key + \" for bean " + typeName + "\");\n";
+  }
+
+  private void generateTypeProvider(StringBuilder code, String typeName, Iterable<Property> properties) {
+    code.append("""
+                key -> {
+                  switch (key) {
+        """);
+    for (var property : properties) {
+      code.append("            case ").append(javaString(property.name))
+          .append(" -> { return ").append(typeExpression(property)).append("; }\n");
+    }
+    code.append("            ").append(unknownKey(typeName));
+    code.append("""
+                  }
+                },
+        """);
+  }
+
+  private void generateRecordBuilder(StringBuilder code, String typeName, List<Property> properties) {
+    code.append("""
+          @Override
+          public com.github.forax.framework.mapper.JSONReader.ObjectBuilder<?> objectBuilder() {
+            return new com.github.forax.framework.mapper.JSONReader.ObjectBuilder<Object[]>(
+        """);
+    generateTypeProvider(code, typeName, properties);
+    code.append("""
+                () -> new Object[%d],
+                (array, key, value) -> {
+                  switch (key) {
+        """.formatted(properties.size()));
+    for (var property : properties) {
+      code.append("            case ").append(javaString(property.name))
+          .append(" -> array[").append(property.index).append("] = value;\n");
+    }
+    code.append("            ").append(unknownKey(typeName));
+    code.append("""
+                  }
+                },
+        """);
+    code.append("        array -> new ").append(typeName).append("(");
+    var separator = "";
+    for (var property : properties) {
+      code.append(separator).append(conversion(property.type, "array[" + property.index + "]"));
+      separator = ", ";
+    }
+    code.append("),\n");
+    generateKeys(code, properties);
+    code.append("""
+            );
+          }
+        """);
+  }
+
+  private void generateBeanBuilder(StringBuilder code, String typeName, boolean hasDefaultConstructor, List<Property> properties) {
+    var setters = properties.stream()
+        .filter(property -> property.setter != null)
+        .toList();
+    code.append("""
+          @Override
+          public com.github.forax.framework.mapper.JSONReader.ObjectBuilder<?> objectBuilder() {
+            return new com.github.forax.framework.mapper.JSONReader.ObjectBuilder<%s>(
+        """.formatted(typeName));
+    generateTypeProvider(code, typeName, setters);
+    if (hasDefaultConstructor) {
+      code.append("        ").append(typeName).append("::new,\n");
+    } else {
+      code.append("        () -> { throw new NoSuchMethodError(\"no public default constructor ").append(typeName).append("\"); },\n");
+    }
+    code.append("""
+                (bean, key, value) -> {
+                  switch (key) {
+        """);
+    for (var property : setters) {
+      code.append("            case ").append(javaString(property.name)).append(" -> bean.").append(property.setter)
+          .append("(").append(conversion(property.type, "value")).append(");\n");
+    }
+    code.append("            ").append(unknownKey(typeName));
+    code.append("""
+                  }
+                },
+                java.util.function.Function.identity(),
+        """);
+    generateKeys(code, setters);
+    code.append("""
+            );
+          }
+        """);
+  }
+
+  private static void generateKeys(StringBuilder code, List<Property> properties) {
+    code.append("        java.util.List.of(");
+    var separator = "";
+    for (var property : properties) {
+      code.append(separator).append(javaString(property.name));
+      separator = ", ";
+    }
+    code.append(")\n");
+  }
+
+  private static String javaString(String text) {
+    var builder = new StringBuilder("\"");
+    for (var i = 0; i < text.length(); i++) {
+      var c = text.charAt(i);
+      switch (c) {
+        case '"' -> builder.append("\\\"");
+        case '\\' -> builder.append("\\\\");
+        case '\n' -> builder.append("\\n");
+        case '\r' -> builder.append("\\r");
+        case '\t' -> builder.append("\\t");
+        default -> {
+          if (c < 0x20) {
+            builder.append("\\u%04x".formatted((int) c));
+          } else {
+            builder.append(c);
+          }
+        }
+      }
+    }
+    return builder.append('"').toString();
+  }
+}
@@ -0,0 +1,339 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.ToyJSONParser.ByteSource;
+import com.github.forax.framework.mapper.ToyJSONParser.Lexer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static com.github.forax.framework.mapper.ToyJSONParser.Kind.*;
+
+/**
+ * A pull parser, the tokens of a JSON text are requested one by one by calling {@link #nextToken()}
+ * instead of being pushed to a {@link ToyJSONParser.JSONVisitor}, so a reader can be written as
+ * straight-line code.
+ *
+ * <pre>
+ * try(var cursor = JSONCursor.of(text)) {
+ *   cursor.nextToken();  // START_OBJECT
+ *   while (cursor.nextToken() == JSONCursor.Token.KEY) {
+ *     if ("age".contentEquals(cursor.getStringView())) {
+ *       cursor.nextToken();
+ *       age = cursor.getInt();
+ *     } else {
+ *       cursor.nextToken();
+ *       cursor.skipChildren();
+ *     }
+ *   }
+ * }
+ * </pre>
+ *
+ * The text of the current token is only valid until the next call to {@link #nextToken()}.
+ * A cursor is not thread safe.
+ */
+public final class JSONCursor implements AutoCloseable {
+  /**
+   * The tokens returned by {@link #nextToken()}.
+   */
+  public enum Token {
+    START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, KEY, STRING, INTEGER, DOUBLE, TRUE, FALSE, NULL
+  }
+
+  private final Lexer lexer;
+  private final Closeable closeable;
+  private boolean[] objects = new boolean[16];  // true if the container at a depth is an object
+  private int depth;
+  private boolean afterKey;
+  private boolean afterValue;
+  private boolean finished;
+  private Token token;
+  private final CharView view = new CharView();
+
+  private JSONCursor(Lexer lexer, Closeable closeable) {
+    this.lexer = lexer;
+    this.closeable = closeable;
+  }
+
+  /**
+   * Creates a cursor on a JSON text.
+   * @param text a JSON text.
+   * @return a new cursor.
+   */
+  public static JSONCursor of(String text) {
+    return of(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Creates a cursor on a JSON text encoded in UTF-8, the array is not copied.
+   * @param data a JSON text encoded in UTF-8.
+   * @return a new cursor.
+   */
+  public static JSONCursor of(byte[] data) {
+    Objects.requireNonNull(data);
+    return new JSONCursor(new Lexer(data, 0, data.length), null);
+  }
+
+  /**
+   * Creates a cursor on a JSON text encoded in UTF-8 read from an input stream,
+   * the input stream is not closed by {@link #close()}.
+   * @param input an input stream of a JSON text encoded in UTF-8.
+   * @return a new cursor.
+   */
+  public static JSONCursor of(InputStream input) {
+    Objects.requireNonNull(input);
+    return new JSONCursor(new Lexer(ByteSource.of(input)), null);
+  }
+
+  /**
+   * Creates a cursor on a JSON text read from a reader,
+   * the reader is not closed by {@link #close()}.
+   * @param reader a reader of a JSON text.
+   * @return a new cursor.
+   */
+  public static JSONCursor of(Reader reader) {
+    Objects.requireNonNull(reader);
+    return new JSONCursor(new Lexer(ByteSource.of(reader)), null);
+  }
+
+  /**
+   * Creates a cursor on a JSON file encoded in UTF-8 read chunk by chunk,
+   * the file is closed by {@link #close()}.
+   * @param path the path of a JSON file encoded in UTF-8.
+   * @return a new cursor.
+   * @throws UncheckedIOException if the file can not be opened.
+   */
+  public static JSONCursor of(Path path) {
+    Objects.requireNonNull(path);
+    InputStream input;
+    try {
+      input = Files.newInputStream(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new JSONCursor(new Lexer(ByteSource.of(input)), input);
+  }
+
+  /**
+   * Moves to the next token.
+   * @return the next token or {@code null} if the root object or array is finished.
+   * @throws IllegalStateException if the JSON text is not valid.
+   */
+  public Token nextToken() {
+    if (finished) {
+      return token = null;
+    }
+    if (depth == 0) {
+      if (token != null) {  // the root is finished
+        finished = true;
+        return token = null;
+      }
+      var kind = lexer.next();
+      if (kind != LEFT_CURLY && kind != LEFT_BRACKET) {
+        throw lexer.error(LEFT_CURLY, LEFT_BRACKET);
+      }
+      return value(kind);
+    }
+    if (afterKey) {
+      afterKey = false;
+      lexer.next();
+      lexer.expect(COLON);
+      return value(lexer.next());
+    }
+    var object = objects[depth - 1];
+    var kind = lexer.next();
+    var end = object ? RIGHT_CURLY : RIGHT_BRACKET;
+    if (kind == end) {
+      depth--;
+      afterValue = true;
+      return token = object ? Token.END_OBJECT : Token.END_ARRAY;
+    }
+    if (afterValue) {
+      if (kind != COMMA) {
+        throw lexer.error(COMMA, end);
+      }
+      kind = lexer.next();
+    }
+    if (!object) {
+      return value(kind);
+    }
+    lexer.expect(STRING);
+    afterKey = true;
+    afterValue = false;
+    return token = Token.KEY;
+  }
+
+  private Token value(ToyJSONParser.Kind kind) {
+    afterValue = true;
+    return token = switch (kind) {
+      case LEFT_CURLY -> push(true, Token.START_OBJECT);
+      case LEFT_BRACKET -> push(false, Token.START_ARRAY);
+      case STRING -> Token.STRING;
+      case INTEGER -> Token.INTEGER;
+      case DOUBLE -> Token.DOUBLE;
+      case TRUE -> Token.TRUE;
+      case FALSE -> Token.FALSE;
+      case NULL -> Token.NULL;
+      default -> throw lexer.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_CURLY, LEFT_BRACKET);
+    };
+  }
+
+  private Token push(boolean object, Token token) {
+    if (depth == objects.length) {
+      objects = Arrays.copyOf(objects, depth << 1);
+    }
+    objects[depth++] = object;
+    afterValue = false;
+    return token;
+  }
+
+  /**
+   * Returns the current token.
+   * @return the current token or {@code null} if {@link #nextToken()} was not called
+   *         or if the root object or array is finished.
+   */
+  public Token currentToken() {
+    return token;
+  }
+
+  /**
+   * If the current token is {@link Token#START_OBJECT} or {@link Token#START_ARRAY}, skips all the tokens
+   * up to the corresponding {@link Token#END_OBJECT} or {@link Token#END_ARRAY}, otherwise do nothing.
+   */
+  public void skipChildren() {
+    if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+      return;
+    }
+    var target = depth - 1;
+    while (depth != target) {
+      nextToken();
+    }
+  }
+
+  private void check(Token expected) {
+    if (token != expected) {
+      throw new IllegalStateException("expect " + expected + " but current token is " + token);
+    }
+  }
+
+  /**
+   * Returns the value of the current {@link Token#INTEGER} as an int.
+   * @return the value of the current token.
+   * @throws IllegalStateException if the current token is not an integer or if the value does not fit in an int.
+   */
+  public int getInt() {
+    var value = getLong();
+    if (value != (int) value) {
+      throw new IllegalStateException("integer too big " + value);
+    }
+    return (int) value;
+  }
+
+  /**
+   * Returns the value of the current {@link Token#INTEGER} as a long.
+   * @return the value of the current token.
+   * @throws IllegalStateException if the current token is not an integer or if the value does not fit in a long.
+   */
+  public long getLong() {
+    check(Token.INTEGER);
+    return lexer.longValue();
+  }
+
+  /**
+   * Returns the value of the current {@link Token#DOUBLE} or {@link Token#INTEGER} as a double.
+   * @return the value of the current token.
+   * @throws IllegalStateException if the current token is not a number.
+   */
+  public double getDouble() {
+    if (token != Token.INTEGER) {
+      check(Token.DOUBLE);
+    }
+    return lexer.doubleValue();
+  }
+
+  /**
+   * Returns the text of the current {@link Token#KEY} or {@link Token#STRING}.
+   * @return a new string.
+   * @throws IllegalStateException if the current token is not a key or a string.
+   * @see #getStringView()
+   */
+  public String getString() {
+    if (token != Token.KEY) {
+      check(Token.STRING);
+    }
+    return lexer.text();
+  }
+
+  /**
+   * Returns the text of the current {@link Token#KEY} or {@link Token#STRING} as a char sequence
+   * only valid until the next call to {@link #nextToken()}.
+   * If the text is ASCII without escape sequence, the characters are copied in a buffer owned by
+   * the cursor, so no object is allocated.
+   * @return a view of the text of the current token.
+   * @throws IllegalStateException if the current token is not a key or a string.
+   */
+  public CharSequence getStringView() {
+    if (token != Token.KEY) {
+      check(Token.STRING);
+    }
+    var length = lexer.length();
+    if (length > view.chars.length) {
+      view.chars = new char[Math.max(length, view.chars.length << 1)];
+    }
+    var count = lexer.copyASCII(view.chars);
+    if (count == -1) {
+      return lexer.text();
+    }
+    view.length = count;
+    return view;
+  }
+
+  /**
+   * Releases the buffer of the cursor and closes the file if the cursor was created from a path.
+   */
+  @Override
+  public void close() {
+    lexer.release();
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private static final class CharView implements CharSequence {
+    private char[] chars = new char[64];
+    private int length;
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      Objects.checkIndex(index, length);
+      return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      Objects.checkFromToIndex(start, end, length);
+      return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      return new String(chars, 0, length);
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package com.github.forax.framework.mapper;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * The JFR events emitted by {@link JSONWriter} and {@link JSONReader}.
+ * The events have a threshold of 10 ms by default, and are only recorded if enabled in the JFR settings,
+ * when disabled, the only cost is the allocation of the event that is removed by the JIT.
+ */
+final class JSONEvents {
+  private JSONEvents() {
+    throw new AssertionError();
+  }
+
+  private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /**
+   * Value of the field {@code allocated} of the events if the number of allocated bytes is unknown,
+   * by example on a virtual thread.
+   */
+  static final long UNKNOWN = -1;
+
+  /**
+   * Returns the number of bytes allocated by the current thread so far,
+   * or {@link #UNKNOWN} if not supported, the JDK does not support it for virtual threads.
+   */
+  static long allocatedBytes() {
+    return THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+  }
+
+  /**
+   * Returns the number of bytes allocated by the current thread since {@code start},
+   * a value returned by {@link #allocatedBytes()}, or {@link #UNKNOWN}.
+   */
+  static long allocatedSince(long start) {
+    if (start == UNKNOWN) {
+      return UNKNOWN;
+    }
+    var end = allocatedBytes();
+    return end == UNKNOWN ? UNKNOWN : end - start;
+  }
+
+  @Name("com.github.forax.framework.mapper.Serialization")
+  @Label("JSON Serialization")
+  @Description("Serialization of a root object to JSON")
+  @Category({"Framework", "JSON"})
+  @Threshold("10 ms")
+  @StackTrace(false)
+  static final class Serialization extends Event {
+    @Label("Root Type")
+    Class<?> rootType;
+
+    @Label("Output Size")
+    @Description("Number of characters or bytes written")
+    @DataAmount
+    long size;
+
+    @Label("Allocated")
+    @Description("Number of bytes allocated by the thread, -1 if unknown (virtual thread)")
+    @DataAmount
+    long allocated;
+  }
+
+  @Name("com.github.forax.framework.mapper.Deserialization")
+  @Label("JSON Deserialization")
+  @Description("Deserialization of a JSON text to a root object")
+  @Category({"Framework", "JSON"})
+  @Threshold("10 ms")
+  @StackTrace(false)
+  static final class Deserialization extends Event {
+    @Label("Root Type")
+    Class<?> rootType;
+
+    @Label("Input Size")
+    @Description("Number of characters or bytes read")
+    @DataAmount
+    long size;
+
+    @Label("Allocated")
+    @Description("Number of bytes allocated by the thread, -1 if unknown (virtual thread)")
+    @DataAmount
+    long allocated;
+  }
+}
@@ -0,0 +1,78 @@
+package com.github.forax.framework.mapper;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Cumulative per type counters of the serializations of a {@link JSONWriter}
+ * or of the deserializations of a {@link JSONReader}.
+ *
+ * <pre>
+ * var metrics = new JSONMetrics();
+ * writer.metrics(metrics);
+ * ...
+ * System.out.println(metrics.counters(Person.class));
+ * </pre>
+ *
+ * The counters are updated concurrently without lock, a snapshot is not atomic across the counters.
+ */
+public final class JSONMetrics {
+  /**
+   * The counters of a type.
+   * @param count the number of (de)serializations.
+   * @param size the total number of characters or bytes written or read.
+   * @param nanos the total duration in nanoseconds.
+   */
+  public record Counters(long count, long size, long nanos) {
+    public static final Counters EMPTY = new Counters(0, 0, 0);
+  }
+
+  private static final class Counter {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder size = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+
+    Counters snapshot() {
+      return new Counters(count.sum(), size.sum(), nanos.sum());
+    }
+  }
+
+  private final ConcurrentHashMap<Class<?>, Counter> counterMap = new ConcurrentHashMap<>();
+
+  void record(Class<?> type, long size, long nanos) {
+    var counter = counterMap.computeIfAbsent(type, __ -> new Counter());
+    counter.count.increment();
+    counter.size.add(size);
+    counter.nanos.add(nanos);
+  }
+
+  /**
+   * Returns the counters of a type.
+   * @param type a root type.
+   * @return the counters of the type, {@link Counters#EMPTY} if there are none.
+   */
+  public Counters counters(Class<?> type) {
+    Objects.requireNonNull(type);
+    var counter = counterMap.get(type);
+    return counter == null ? Counters.EMPTY : counter.snapshot();
+  }
+
+  /**
+   * Returns the counters of all the root types seen so far.
+   * @return an unmodifiable map of the counters of all the root types.
+   */
+  public Map<Class<?>, Counters> snapshot() {
+    return counterMap.entrySet().stream()
+        .collect(Collectors.toUnmodifiableMap(Map.Entry::getKey, entry -> entry.getValue().snapshot()));
+  }
+
+  /**
+   * Resets all the counters.
+   */
+  public void reset() {
+    counterMap.clear();
+  }
+}
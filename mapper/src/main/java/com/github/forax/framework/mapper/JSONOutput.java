@@ -0,0 +1,661 @@
+package com.github.forax.framework.mapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A sink of JSON text shared by all the generators of a call to {@link JSONWriter#toJSON(Object, JSONOutput)}.
+ * The text is accumulated in an internal buffer, either as chars or as UTF-8 bytes, and flushed
+ * to the underlying target when the buffer is full, so no intermediary strings are created.
+ * The buffers are taken from a {@link BufferPool} and given back at the end of the serialization.
+ */
+public abstract class JSONOutput {
+  JSONOutput() {}
+
+  /**
+   * Appends a character.
+   * @param c a character
+   */
+  public abstract void append(char c);
+
+  /**
+   * Appends a text as is, without any escaping.
+   * @param text a text
+   */
+  public abstract void append(String text);
+
+  /**
+   * Appends a text as a JSON string, between quotes and with the quotes, the backslashes
+   * and the control characters escaped.
+   * @param text a text
+   */
+  public abstract void appendString(String text);
+
+  /**
+   * Appends the decimal digits of an int.
+   * @param value an int
+   */
+  public void appendInt(int value) {
+    appendLong(value);
+  }
+
+  /**
+   * Appends the decimal digits of a long.
+   * @param value a long
+   */
+  public abstract void appendLong(long value);
+
+  /**
+   * Appends the text representation of a float.
+   * @param value a float
+   */
+  public void appendFloat(float value) {
+    append(Float.toString(value));
+  }
+
+  /**
+   * Appends the text representation of a double.
+   * @param value a double
+   */
+  public void appendDouble(double value) {
+    append(Double.toString(value));
+  }
+
+  /**
+   * Appends {@code true} or {@code false}.
+   * @param value a boolean
+   */
+  public void appendBoolean(boolean value) {
+    append(value ? "true" : "false");
+  }
+
+  abstract void appendKey(Key key);
+
+  abstract void appendRange(String text, int from, int to);
+
+  /**
+   * Creates an output of the same kind, without target, used to serialize a part of the text in parallel.
+   * @see #appendChunk(JSONOutput)
+   */
+  abstract JSONOutput newChunk();
+
+  /**
+   * Appends the content of a chunk created by {@link #newChunk()}.
+   */
+  abstract void appendChunk(JSONOutput chunk);
+
+  /**
+   * Gives back the internal buffer to its pool, the output should not be used after this call.
+   */
+  abstract void release();
+
+  /**
+   * For each ASCII character, the character to use after the backslash if it needs to be escaped, 0 otherwise.
+   */
+  static final byte[] ESCAPES = new byte[128];
+  static {
+    for (var c = 0; c < 0x20; c++) {
+      ESCAPES[c] = 'u';
+    }
+    ESCAPES['"'] = '"';
+    ESCAPES['\\'] = '\\';
+    ESCAPES['\b'] = 'b';
+    ESCAPES['\f'] = 'f';
+    ESCAPES['\n'] = 'n';
+    ESCAPES['\r'] = 'r';
+    ESCAPES['\t'] = 't';
+  }
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  static boolean needsEscape(char c) {
+    return c < ESCAPES.length && ESCAPES[c] != 0;
+  }
+
+  /**
+   * Slow path, appends the characters of the text starting at index {@code from} escaping them if necessary
+   * followed by the closing quote.
+   */
+  final void appendEscaped(String text, int from) {
+    var textLength = text.length();
+    var start = from;
+    for (var i = from; i < textLength; i++) {
+      var c = text.charAt(i);
+      if (!needsEscape(c)) {
+        continue;
+      }
+      if (start < i) {
+        appendRange(text, start, i);
+      }
+      var escape = ESCAPES[c];
+      append('\\');
+      append((char) escape);
+      if (escape == 'u') {
+        append("00");
+        append(HEX_DIGITS[c >> 4]);
+        append(HEX_DIGITS[c & 0xF]);
+      }
+      start = i + 1;
+    }
+    if (start < textLength) {
+      appendRange(text, start, textLength);
+    }
+    append('"');
+  }
+
+  /**
+   * Returns a text as a JSON string, between quotes and escaped.
+   * @param text a text
+   * @return a text as a JSON string, between quotes and escaped.
+   */
+  static String quote(String text) {
+    var out = new CharOutput(null);
+    try {
+      out.appendString(text);
+      return out.toString();
+    } finally {
+      out.release();
+    }
+  }
+
+  abstract void flush();
+
+  /**
+   * Returns the number of characters or bytes written so far, flushed or not.
+   */
+  abstract long size();
+
+  /**
+   * Returns the number of characters of the decimal representation of a long.
+   */
+  static int stringSize(long value) {
+    var sign = 1;
+    if (value >= 0) {
+      sign = 0;
+      value = -value;
+    }
+    var power = -10L;
+    for (var i = 1; i < 19; i++) {
+      if (value > power) {
+        return i + sign;
+      }
+      power = 10 * power;
+    }
+    return 19 + sign;
+  }
+
+  /**
+   * A JSON key followed by the colon, pre-encoded in UTF-8 once per class.
+   */
+  record Key(String text, byte[] utf8) {
+    Key(String text) {
+      this(text, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Key of(String name) {
+      return new Key(quote(name) + ": ");
+    }
+  }
+
+  @FunctionalInterface
+  interface CharSink {
+    void write(char[] buffer, int length) throws IOException;
+
+    static CharSink of(Appendable appendable) {
+      return switch (appendable) {
+        case StringBuilder builder -> (buffer, length) -> builder.append(buffer, 0, length);
+        case Writer writer -> (buffer, length) -> writer.write(buffer, 0, length);
+        default -> (buffer, length) -> appendable.append(CharBuffer.wrap(buffer, 0, length));
+      };
+    }
+  }
+
+  @FunctionalInterface
+  interface ByteSink {
+    void write(byte[] buffer, int length) throws IOException;
+
+    static ByteSink of(OutputStream outputStream) {
+      return (buffer, length) -> outputStream.write(buffer, 0, length);
+    }
+
+    static ByteSink of(WritableByteChannel channel) {
+      return (buffer, length) -> {
+        var byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+        while (byteBuffer.hasRemaining()) {
+          channel.write(byteBuffer);
+        }
+      };
+    }
+
+    static ByteSink of(ByteBuffer byteBuffer) {
+      return (buffer, length) -> byteBuffer.put(buffer, 0, length);
+    }
+  }
+
+  static final class CharOutput extends JSONOutput {
+    private static final int DEFAULT_CAPACITY = 8_192;
+
+    private final CharSink sink;
+    private char[] buffer;
+    private int length;
+    private long flushed;
+
+    CharOutput(CharSink sink) {
+      this(sink, DEFAULT_CAPACITY);
+    }
+
+    CharOutput(CharSink sink, int capacity) {
+      this.sink = sink;
+      this.buffer = BufferPool.CHARS.acquire(Math.max(DEFAULT_CAPACITY, capacity));
+    }
+
+    private void ensureCapacity(int additional) {
+      if (length + additional <= buffer.length) {
+        return;
+      }
+      if (sink != null) {
+        flush();
+        if (additional <= buffer.length) {
+          return;
+        }
+      }
+      grow(Math.max(buffer.length << 1, length + additional));
+    }
+
+    @Override
+    public void append(char c) {
+      ensureCapacity(1);
+      buffer[length++] = c;
+    }
+
+    @Override
+    public void append(String text) {
+      var textLength = text.length();
+      ensureCapacity(textLength);
+      text.getChars(0, textLength, buffer, length);
+      length += textLength;
+    }
+
+    @Override
+    void appendRange(String text, int from, int to) {
+      ensureCapacity(to - from);
+      text.getChars(from, to, buffer, length);
+      length += to - from;
+    }
+
+    @Override
+    public void appendString(String text) {
+      var textLength = text.length();
+      ensureCapacity(textLength + 2);
+      var buffer = this.buffer;
+      var start = length + 1;
+      var end = start + textLength;
+      buffer[length] = '"';
+      // bulk copy then check, most of the strings do not need to be escaped
+      text.getChars(0, textLength, buffer, start);
+      for (var i = start; i < end; i++) {
+        if (needsEscape(buffer[i])) {
+          length = i;
+          appendEscaped(text, i - start);
+          return;
+        }
+      }
+      buffer[end] = '"';
+      length = end + 1;
+    }
+
+    @Override
+    public void appendLong(long value) {
+      var size = stringSize(value);
+      ensureCapacity(size);
+      var buffer = this.buffer;
+      var index = length + size;
+      var negative = value < 0;
+      if (!negative) {
+        value = -value;  // work with negative values, so Long.MIN_VALUE does not overflow
+      }
+      while (value <= -10) {
+        var quotient = value / 10;
+        buffer[--index] = (char) ('0' + (quotient * 10 - value));
+        value = quotient;
+      }
+      buffer[--index] = (char) ('0' - value);
+      if (negative) {
+        buffer[--index] = '-';
+      }
+      length += size;
+    }
+
+    @Override
+    void appendKey(Key key) {
+      append(key.text);
+    }
+
+    @Override
+    void flush() {
+      if (sink == null || length == 0) {
+        return;
+      }
+      write(buffer, length);
+      flushed += length;
+      length = 0;
+    }
+
+    @Override
+    long size() {
+      return flushed + length;
+    }
+
+    @Override
+    JSONOutput newChunk() {
+      return new CharOutput(null);
+    }
+
+    @Override
+    void appendChunk(JSONOutput output) {
+      var chunk = (CharOutput) output;
+      if (sink != null && chunk.length > buffer.length) {
+        flush();
+        write(chunk.buffer, chunk.length);
+        flushed += chunk.length;
+        return;
+      }
+      ensureCapacity(chunk.length);
+      System.arraycopy(chunk.buffer, 0, buffer, length, chunk.length);
+      length += chunk.length;
+    }
+
+    int capacity() {
+      return buffer.length;
+    }
+
+    private void grow(int capacity) {
+      var newBuffer = BufferPool.CHARS.acquire(capacity);
+      System.arraycopy(buffer, 0, newBuffer, 0, length);
+      BufferPool.CHARS.release(buffer);
+      buffer = newBuffer;
+    }
+
+    @Override
+    void release() {
+      var buffer = this.buffer;
+      if (buffer != null) {
+        this.buffer = null;
+        BufferPool.CHARS.release(buffer);
+      }
+    }
+
+    private void write(char[] buffer, int length) {
+      try {
+        sink.write(buffer, length);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return new String(buffer, 0, length);
+    }
+  }
+
+  static final class ByteOutput extends JSONOutput {
+    private static final int DEFAULT_CAPACITY = 8_192;
+
+    private final ByteSink sink;
+    private byte[] buffer;
+    private int length;
+    private long flushed;
+
+    ByteOutput(ByteSink sink) {
+      this(sink, DEFAULT_CAPACITY);
+    }
+
+    ByteOutput(ByteSink sink, int capacity) {
+      this.sink = sink;
+      this.buffer = BufferPool.BYTES.acquire(Math.max(DEFAULT_CAPACITY, capacity));
+    }
+
+    private void ensureCapacity(int additional) {
+      if (length + additional <= buffer.length) {
+        return;
+      }
+      if (sink != null) {
+        flush();
+        if (additional <= buffer.length) {
+          return;
+        }
+      }
+      grow(Math.max(buffer.length << 1, length + additional));
+    }
+
+    @Override
+    public void append(char c) {
+      if (c < 0x80) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) c;
+        return;
+      }
+      append(String.valueOf(c));
+    }
+
+    @Override
+    public void append(String text) {
+      appendRange(text, 0, text.length());
+    }
+
+    @Override
+    void appendRange(String text, int from, int to) {
+      // a char is encoded in at most 3 bytes, a surrogate pair (2 chars) in 4 bytes
+      ensureCapacity((to - from) * 3);
+      var buffer = this.buffer;
+      var length = this.length;
+      for (var i = from; i < to; i++) {
+        var c = text.charAt(i);
+        if (c < 0x80) {
+          buffer[length++] = (byte) c;
+        } else if (c < 0x800) {
+          buffer[length++] = (byte) (0xC0 | (c >> 6));
+          buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isSurrogate(c)) {
+          int codePoint;
+          if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(text.charAt(i + 1))) {
+            codePoint = Character.toCodePoint(c, text.charAt(++i));
+          } else {
+            codePoint = '?';  // malformed surrogate, same replacement as String.getBytes()
+          }
+          if (codePoint < 0x80) {
+            buffer[length++] = (byte) codePoint;
+          } else {
+            buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+          }
+        } else {
+          buffer[length++] = (byte) (0xE0 | (c >> 12));
+          buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      this.length = length;
+    }
+
+    @Override
+    public void appendString(String text) {
+      var textLength = text.length();
+      ensureCapacity(textLength * 3 + 2);
+      var start = length;
+      buffer[length++] = '"';
+      // encode then check, most of the strings do not need to be escaped
+      appendRange(text, 0, textLength);
+      if (!needsEscape(buffer, start + 1, length)) {
+        buffer[length++] = '"';
+        return;
+      }
+      length = start + 1;
+      appendEscaped(text, 0);
+    }
+
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static boolean needsEscape(byte[] buffer, int from, int to) {
+      var i = from;
+      for (; i + Long.BYTES <= to; i += Long.BYTES) {
+        if (needsEscape((long) LONG_VIEW.get(buffer, i))) {
+          return true;
+        }
+      }
+      for (; i < to; i++) {
+        var b = buffer[i];
+        if (b >= 0 && ESCAPES[b] != 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * SWAR (SIMD within a register), checks 8 bytes at once.
+     * A byte needs to be escaped if it's less than 0x20, a quote or a backslash,
+     * the bytes of a multi-bytes UTF-8 sequence are all greater than 0x80, so they are never selected.
+     *
+     * @see <a href="https://graphics.stanford.edu/~seander/bithacks.html#HasLessInWord">haszero and hasless</a>
+     */
+    private static boolean needsEscape(long word) {
+      var quote = word ^ 0x2222222222222222L;
+      var backslash = word ^ 0x5C5C5C5C5C5C5C5CL;
+      var result = ((word - 0x2020202020202020L) & ~word)
+          | ((quote - 0x0101010101010101L) & ~quote)
+          | ((backslash - 0x0101010101010101L) & ~backslash);
+      return (result & 0x8080808080808080L) != 0;
+    }
+
+    @Override
+    public void appendLong(long value) {
+      var size = stringSize(value);
+      ensureCapacity(size);
+      var buffer = this.buffer;
+      var index = length + size;
+      var negative = value < 0;
+      if (!negative) {
+        value = -value;  // work with negative values, so Long.MIN_VALUE does not overflow
+      }
+      while (value <= -10) {
+        var quotient = value / 10;
+        buffer[--index] = (byte) ('0' + (quotient * 10 - value));
+        value = quotient;
+      }
+      buffer[--index] = (byte) ('0' - value);
+      if (negative) {
+        buffer[--index] = '-';
+      }
+      length += size;
+    }
+
+    @Override
+    void appendKey(Key key) {
+      var utf8 = key.utf8;
+      ensureCapacity(utf8.length);
+      System.arraycopy(utf8, 0, buffer, length, utf8.length);
+      length += utf8.length;
+    }
+
+    @Override
+    void flush() {
+      if (sink == null || length == 0) {
+        return;
+      }
+      write(buffer, length);
+      flushed += length;
+      length = 0;
+    }
+
+    @Override
+    long size() {
+      return flushed + length;
+    }
+
+    @Override
+    JSONOutput newChunk() {
+      return new ByteOutput(null);
+    }
+
+    @Override
+    void appendChunk(JSONOutput output) {
+      var chunk = (ByteOutput) output;
+      if (sink != null && chunk.length > buffer.length) {
+        flush();
+        write(chunk.buffer, chunk.length);
+        flushed += chunk.length;
+        return;
+      }
+      ensureCapacity(chunk.length);
+      System.arraycopy(chunk.buffer, 0, buffer, length, chunk.length);
+      length += chunk.length;
+    }
+
+    int capacity() {
+      return buffer.length;
+    }
+
+    private void grow(int capacity) {
+      var newBuffer = BufferPool.BYTES.acquire(capacity);
+      System.arraycopy(buffer, 0, newBuffer, 0, length);
+      BufferPool.BYTES.release(buffer);
+      buffer = newBuffer;
+    }
+
+    @Override
+    void release() {
+      var buffer = this.buffer;
+      if (buffer != null) {
+        this.buffer = null;
+        BufferPool.BYTES.release(buffer);
+      }
+    }
+
+    private void write(byte[] buffer, int length) {
+      try {
+        sink.write(buffer, length);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, length);
+    }
+  }
+
+  static CharOutput of(Appendable appendable) {
+    Objects.requireNonNull(appendable);
+    return new CharOutput(CharSink.of(appendable));
+  }
+
+  static ByteOutput of(OutputStream outputStream) {
+    Objects.requireNonNull(outputStream);
+    return new ByteOutput(ByteSink.of(outputStream));
+  }
+
+  static ByteOutput of(WritableByteChannel channel) {
+    Objects.requireNonNull(channel);
+    return new ByteOutput(ByteSink.of(channel));
+  }
+
+  static ByteOutput of(ByteBuffer byteBuffer) {
+    Objects.requireNonNull(byteBuffer);
+    return new ByteOutput(ByteSink.of(byteBuffer));
+  }
+}
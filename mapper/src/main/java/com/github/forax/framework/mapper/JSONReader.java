@@ -3,19 +3,34 @@ package com.github.forax.framework.mapper;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 public class JSONReader {
 
-  private record BeanData(Constructor<?> constructor, Map<String, PropertyDescriptor> propertyMap) {
-    PropertyDescriptor findProperty(String key) {
+  /**
+   * A writable property of a bean, the generic type of the setter parameter is computed once.
+   */
+  private record BeanProperty(Method setter, Type type) {}
+
+  private record BeanData(Constructor<?> constructor, Map<String, BeanProperty> propertyMap, KeyTable keyTable) {
+    BeanProperty findProperty(String key) {
       var property = propertyMap.get(key);
       if (property == null) {
         throw new IllegalStateException("unknown key " + key + " for bean " + constructor.getDeclaringClass().getName());
@@ -29,9 +44,26 @@ public class JSONReader {
     protected BeanData computeValue(Class<?> type) {
       var beanInfo = Utils.beanInfo(type);
       var map = Arrays.stream(beanInfo.getPropertyDescriptors())
-          .filter(property -> !property.getName().equals("class"))
-          .collect(Collectors.toMap(PropertyDescriptor::getName, Function.identity()));
-      return new BeanData(Utils.defaultConstructor(type), map);
+          .filter(property -> !property.getName().equals("class") && property.getWriteMethod() != null)
+          .collect(Collectors.toMap(PropertyDescriptor::getName, property -> {
+            var setter = property.getWriteMethod();
+            return new BeanProperty(setter, setter.getGenericParameterTypes()[0]);
+          }));
+      return new BeanData(Utils.defaultConstructor(type), map, new KeyTable(List.copyOf(map.keySet())));
+    }
+  };
+
+  private static final ClassValue<Optional<ObjectBuilder<?>>> CODEC_CLASS_VALUE = new ClassValue<>() {
+    @Override
+    protected Optional<ObjectBuilder<?>> computeValue(Class<?> type) {
+      return Optional.ofNullable(Utils.generatedCodec(type)).map(JSONCodec.Codec::objectBuilder);
+    }
+  };
+
+  private static final ClassValue<KeyTable> RECORD_KEY_TABLE_CLASS_VALUE = new ClassValue<>() {
+    @Override
+    protected KeyTable computeValue(Class<?> type) {
+      return new KeyTable(Arrays.stream(type.getRecordComponents()).map(RecordComponent::getName).toList());
     }
   };
 
@@ -42,36 +74,69 @@ public class JSONReader {
 
   private final ArrayList<TypeMatcher> typeMatchers = new ArrayList<>();
 
+  /**
+   * Creates the instances of a type when parsing, the key table contains the keys of the object
+   * that are matched directly on the bytes of the text, it is empty if the keys are not known.
+   */
   public record ObjectBuilder<T>(Function<? super String, ? extends Type> typeProvider,
                                  Supplier<? extends T> supplier,
                                  Populater<? super T> populater,
-                                 Function<? super T, ?> finisher) {
+                                 Function<? super T, ?> finisher,
+                                 KeyTable keyTable) {
     public interface Populater<T> {
       void populate(T instance, String key, Object value);
     }
 
+    public ObjectBuilder {
+      Objects.requireNonNull(keyTable);
+    }
+
+    /**
+     * Creates an object builder that does not know the keys of the object.
+     */
+    public ObjectBuilder(Function<? super String, ? extends Type> typeProvider,
+                         Supplier<? extends T> supplier,
+                         Populater<? super T> populater,
+                         Function<? super T, ?> finisher) {
+      this(typeProvider, supplier, populater, finisher, KeyTable.EMPTY);
+    }
+
+    /**
+     * Creates an object builder of an object with the given keys.
+     */
+    public ObjectBuilder(Function<? super String, ? extends Type> typeProvider,
+                         Supplier<? extends T> supplier,
+                         Populater<? super T> populater,
+                         Function<? super T, ?> finisher,
+                         List<String> keys) {
+      this(typeProvider, supplier, populater, finisher, new KeyTable(keys));
+    }
+
     public static ObjectBuilder<Object[]> record(Class<?> recordClass) {
       Objects.requireNonNull(recordClass);
       var components = recordClass.getRecordComponents();
       var map = IntStream.range(0, components.length)
           .boxed()
           .collect(Collectors.toMap(i -> components[i].getName(), Function.identity()));
+      var types = Arrays.stream(components).map(RecordComponent::getGenericType).toArray(Type[]::new);
       var constructor = Utils.canonicalConstructor(recordClass, components);
       return new ObjectBuilder<>(
-          key -> components[map.get(key)].getGenericType(),
+          key -> types[map.get(key)],
           () -> new Object[components.length],
           (array, key, value) -> array[map.get(key)] = value,
-          array -> Utils.newInstance(constructor, array)
+          array -> Utils.newInstance(constructor, array),
+          RECORD_KEY_TABLE_CLASS_VALUE.get(recordClass)
       );
     }
 
     public static ObjectBuilder<Object> bean(Class<?> beanClass) {
       var beanData = BEAN_DATA_CLASS_VALUE.get(beanClass);
       return new ObjectBuilder<>(
-          key -> beanData.findProperty(key).getWriteMethod().getGenericParameterTypes()[0],
+          key -> beanData.findProperty(key).type,
           () -> Utils.newInstance(beanData.constructor),
-          (instance, key, value) -> Utils.invokeMethod(instance, beanData.findProperty(key).getWriteMethod(), value),
-          Function.identity()
+          (instance, key, value) -> Utils.invokeMethod(instance, beanData.findProperty(key).setter, value),
+          Function.identity(),
+          beanData.keyTable
       );
     }
 
@@ -123,56 +188,372 @@ public class JSONReader {
     return expectedClass.cast(parseJSON(text, (Type)expectedClass));
   }
 
+  private JSONMetrics metrics;
+
+  /**
+   * Records the number, the size and the duration of the deserializations per expected type in the metrics.
+   * @param metrics the metrics to update.
+   */
+  public void metrics(JSONMetrics metrics) {
+    this.metrics = Objects.requireNonNull(metrics);
+  }
+
   public Object parseJSON(String text, Type expectedType) {
     Objects.requireNonNull(text);
     Objects.requireNonNull(expectedType);
-    var stack = new ArrayDeque<Context<?>>();
-    var visitor = new ToyJSONParser.JSONVisitor() {
-      private Object result;
+    return parseJSON(expectedType, visitor -> {
+      ToyJSONParser.parse(text, visitor);
+      return text.length();
+    });
+  }
 
-      @Override
-      public void value(String key, Object value) {
-        // call the corresponding setter on result
-        var context = stack.peek();
-        context.populate(key, value);
+  public <T> T parseJSON(byte[] data, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(data, (Type) expectedClass));
+  }
+
+  /**
+   * Parses a JSON text encoded in UTF-8, the bytes are tokenized directly,
+   * the strings are only decoded when they are passed to the object builders.
+   * @param data a JSON text encoded in UTF-8.
+   * @param expectedType the type of the result.
+   * @return the decoded value.
+   */
+  public Object parseJSON(byte[] data, Type expectedType) {
+    Objects.requireNonNull(data);
+    Objects.requireNonNull(expectedType);
+    return parseJSON(expectedType, visitor -> {
+      ToyJSONParser.parse(data, visitor);
+      return data.length;
+    });
+  }
+
+  public <T> T parseJSON(ByteBuffer buffer, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(buffer, (Type) expectedClass));
+  }
+
+  /**
+   * Parses the remaining bytes of a buffer as a JSON text encoded in UTF-8,
+   * the position of the buffer is not changed.
+   * @param buffer a buffer containing a JSON text encoded in UTF-8.
+   * @param expectedType the type of the result.
+   * @return the decoded value.
+   * @see #parseJSON(byte[], Type)
+   */
+  public Object parseJSON(ByteBuffer buffer, Type expectedType) {
+    Objects.requireNonNull(buffer);
+    Objects.requireNonNull(expectedType);
+    return parseJSON(expectedType, visitor -> {
+      ToyJSONParser.parse(buffer, visitor);
+      return buffer.remaining();
+    });
+  }
+
+  public <T> T parseJSON(InputStream input, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(input, (Type) expectedClass));
+  }
+
+  /**
+   * Parses a JSON text encoded in UTF-8 read from an input stream, the objects are created
+   * while the bytes are read, the whole text is never in memory. The input stream is not closed.
+   * @param input an input stream of a JSON text encoded in UTF-8.
+   * @param expectedType the type of the result.
+   * @return the decoded value.
+   * @throws java.io.UncheckedIOException if an I/O error occurs.
+   */
+  public Object parseJSON(InputStream input, Type expectedType) {
+    Objects.requireNonNull(input);
+    Objects.requireNonNull(expectedType);
+    return parseJSON(expectedType, visitor -> ToyJSONParser.parse(input, visitor));
+  }
+
+  public <T> T parseJSON(Reader reader, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(reader, (Type) expectedClass));
+  }
+
+  /**
+   * Parses a JSON text read from a reader.
+   * @param reader a reader of a JSON text.
+   * @param expectedType the type of the result.
+   * @return the decoded value.
+   * @see #parseJSON(InputStream, Type)
+   */
+  public Object parseJSON(Reader reader, Type expectedType) {
+    Objects.requireNonNull(reader);
+    Objects.requireNonNull(expectedType);
+    return parseJSON(expectedType, visitor -> ToyJSONParser.parse(reader, visitor));
+  }
+
+  public <T> T parseJSON(ReadableByteChannel channel, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(channel, (Type) expectedClass));
+  }
+
+  /**
+   * Parses a JSON text encoded in UTF-8 read from a channel,
+   * the reads are blocking so the channel must be in blocking mode.
+   * @param channel a channel of a JSON text encoded in UTF-8, in blocking mode.
+   * @param expectedType the type of the result.
+   * @return the decoded value.
+   * @throws IllegalArgumentException if the channel is a non-blocking {@link java.nio.channels.SelectableChannel}.
+   * @see #parseJSON(InputStream, Type)
+   */
+  public Object parseJSON(ReadableByteChannel channel, Type expectedType) {
+    Objects.requireNonNull(channel);
+    Objects.requireNonNull(expectedType);
+    return parseJSON(expectedType, visitor -> ToyJSONParser.parse(channel, visitor));
+  }
+
+  public <T> T parseJSON(Path path, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(path, (Type) expectedClass));
+  }
+
+  /**
+   * Parses a JSON file encoded in UTF-8, the file is read chunk by chunk,
+   * so the file is never loaded in the heap and can be bigger than the heap.
+   * @param path the path of a JSON file encoded in UTF-8.
+   * @param expectedType the type of the result.
+   * @return the decoded value.
+   * @throws java.io.UncheckedIOException if an I/O error occurs.
+   */
+  public Object parseJSON(Path path, Type expectedType) {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(expectedType);
+    return parseJSON(expectedType, visitor -> ToyJSONParser.parse(path, visitor));
+  }
+
+  /**
+   * Parses using the visitor, the parser returns the size of the input in bytes or in chars.
+   */
+  private Object parseJSON(Type expectedType, ToLongFunction<ToyJSONParser.JSONVisitor> parser) {
+    var event = new JSONEvents.Deserialization();
+    var metrics = this.metrics;
+    var visitor = new Visitor(expectedType);
+    if (metrics == null && !event.isEnabled()) {
+      parser.applyAsLong(visitor);
+      return visitor.result;
+    }
+    var type = Utils.erase(expectedType);
+    var allocated = event.isEnabled() ? JSONEvents.allocatedBytes() : 0L;
+    var start = System.nanoTime();
+    event.begin();
+    var size = parser.applyAsLong(visitor);
+    var result = visitor.result;
+    event.end();
+    var nanos = System.nanoTime() - start;
+    if (event.shouldCommit()) {
+      event.rootType = type;
+      event.size = size;
+      event.allocated = JSONEvents.allocatedSince(allocated);
+      event.commit();
+    }
+    if (metrics != null) {
+      metrics.record(type, size, nanos);
+    }
+    return result;
+  }
+
+  private final class Visitor implements ToyJSONParser.JSONVisitor {
+    private final ArrayDeque<Context<?>> stack = new ArrayDeque<>();
+    private final Type expectedType;
+    private KeyTable keyTable;
+    private Type numberType;
+    private Object result;
+
+    private Visitor(Type expectedType) {
+      this.expectedType = expectedType;
+    }
+
+    @Override
+    public void value(String key, Object value) {
+      // call the corresponding setter on result
+      var context = stack.peek();
+      if (value instanceof Number number) {
+        value = convert(number, numberType);
       }
+      context.populate(key, value);
+    }
+
+    @Override
+    public Type numberType(String key) {
+      // the type is kept to convert the number in value()
+      return numberType = stack.peek().builder.typeProvider.apply(key);
+    }
+
+    @Override
+    public void startObject(String key) {
+      var context = stack.peek();
+      //get the beanData and store it in the field
+      var beanType = context == null
+          ? expectedType
+          : context.builder.typeProvider.apply(key);
+      //create an instance and store it in result
+      var objectbuilder = findObjectsBuilder(beanType);
+      stack.push(Context.create(objectbuilder));
+      keyTable = objectbuilder.keyTable;
+    }
+
+    @Override
+    public KeyTable keyTable() {
+      return keyTable;
+    }
 
-      @Override
-      public void startObject(String key) {
+    @Override
+    public void endObject(String key) {
+      var previousContext = stack.pop();
+      if (stack.isEmpty()) {
+        result = previousContext.finish();
+      } else {
         var context = stack.peek();
-        //get the beanData and store it in the field
-        var beanType = context == null
-            ? expectedType
-            : context.builder.typeProvider.apply(key);
-        //create an instance and store it in result
-        var objectbuilder = findObjectsBuilder(beanType);
-        stack.push(Context.create(objectbuilder));
+
+        context.populate(key, previousContext.finish());
       }
+    }
 
-      @Override
-      public void endObject(String key) {
-        var previousContext = stack.pop();
-        if (stack.isEmpty()) {
-          result = previousContext.finish();
-        } else {
-          var context = stack.peek();
+    @Override
+    public void startArray(String key) {
+      startObject(key);
+    }
 
-          context.populate(key, previousContext.finish());
-        }
-      }
+    @Override
+    public void endArray(String key) {
+      endObject(key);
+    }
+  }
 
-      @Override
-      public void startArray(String key) {
-        startObject(key);
+  /**
+   * Converts a number to the type of the property, the parser returns an Integer, a Long, a Double or a BigDecimal.
+   * If the number can not be converted without loss, it is returned unchanged,
+   * apart if the type is a primitive type.
+   * @throws IllegalStateException if the number can not be converted to a primitive type.
+   */
+  private static Object convert(Number number, Type type) {
+    if (number instanceof Integer && (type == int.class || type == Integer.class)) {  // fast path
+      return number;
+    }
+    if (type == double.class || type == Double.class) {
+      return number.doubleValue();
+    }
+    if (type == float.class || type == Float.class) {
+      return number.floatValue();
+    }
+    if (type == BigDecimal.class) {
+      return switch (number) {
+        case BigDecimal decimal -> decimal;
+        case Double value -> BigDecimal.valueOf(value);
+        default -> BigDecimal.valueOf(number.longValue());
+      };
+    }
+    if (number instanceof Double) {
+      return unchanged(number, type);
+    }
+    if (number instanceof BigDecimal decimal) {
+      if (decimal.scale() > 0) {
+        return unchanged(number, type);
+      }
+      if (type == BigInteger.class) {
+        return decimal.toBigInteger();
       }
+      if (decimal.unscaledValue().bitLength() >= Long.SIZE) {
+        return unchanged(number, type);
+      }
+    }
+    if (type == BigInteger.class) {
+      return BigInteger.valueOf(number.longValue());
+    }
+    var value = number.longValue();
+    if (type == long.class || type == Long.class) {
+      return value;
+    }
+    if ((type == int.class || type == Integer.class) && value == (int) value) {
+      return (int) value;
+    }
+    if ((type == short.class || type == Short.class) && value == (short) value) {
+      return (short) value;
+    }
+    if ((type == byte.class || type == Byte.class) && value == (byte) value) {
+      return (byte) value;
+    }
+    return unchanged(number, type);
+  }
 
-      @Override
-      public void endArray(String key) {
-        endObject(key);
+  private static Number unchanged(Number number, Type type) {
+    if (type instanceof Class<?> clazz && clazz.isPrimitive()) {
+      throw new IllegalStateException("number " + number + " can not be converted to " + clazz.getName());
+    }
+    return number;
+  }
+
+  public <T> T parseBinary(byte[] data, Class<T> expectedClass) {
+    return expectedClass.cast(parseBinary(data, (Type) expectedClass));
+  }
+
+  /**
+   * Decodes the binary format generated by {@link JSONWriter#toBinary(Object, boolean)},
+   * the objects and the arrays are created using the same object builders as {@link #parseJSON(String, Type)}.
+   * @param data the binary data.
+   * @param expectedType the type of the result.
+   * @return the decoded value.
+   * @throws IllegalStateException if the data are not valid.
+   */
+  public Object parseBinary(byte[] data, Type expectedType) {
+    Objects.requireNonNull(data);
+    Objects.requireNonNull(expectedType);
+    var input = new Binary.Input(data);
+    var result = decode(input, expectedType);
+    if (input.hasRemaining()) {
+      throw new IllegalStateException("trailing data");
+    }
+    return result;
+  }
+
+  private Object decode(Binary.Input input, Type type) {
+    var tag = input.readTag();
+    return switch (tag) {
+      case Binary.NULL -> null;
+      case Binary.FALSE -> false;
+      case Binary.TRUE -> true;
+      case Binary.INT -> {
+        var value = input.readInt();
+        // shorts and bytes are encoded as ints
+        var erasedType = Utils.erase(type);
+        if (erasedType == short.class || erasedType == Short.class) {
+          yield (short) value;
+        }
+        if (erasedType == byte.class || erasedType == Byte.class) {
+          yield (byte) value;
+        }
+        yield value;
       }
+      case Binary.LONG -> input.readLong();
+      case Binary.FLOAT -> input.readFloat();
+      case Binary.DOUBLE -> input.readDouble();
+      case Binary.CHAR -> input.readChar();
+      case Binary.STRING -> input.readUTF8();
+      case Binary.ARRAY, Binary.OBJECT -> decodeObject(input, findObjectsBuilder(type), tag == Binary.ARRAY, null);
+      case Binary.INDEXED_OBJECT -> decodeObject(input, findObjectsBuilder(type), false, JSONWriter.propertyNames(Utils.erase(type)));
+      default -> throw new IllegalStateException("invalid tag " + tag);
     };
-    ToyJSONParser.parse(text, visitor);
-    return visitor.result;
+  }
+
+  private <T> Object decodeObject(Binary.Input input, ObjectBuilder<T> builder, boolean array, List<String> names) {
+    var count = input.readLength();
+    var instance = builder.supplier.get();
+    for (var i = 0; i < count; i++) {
+      String key;
+      if (array) {
+        key = null;
+      } else if (names == null) {
+        key = input.readUTF8();
+      } else {
+        var index = input.readLength();
+        if (index >= names.size()) {
+          throw new IllegalStateException("invalid field index " + index);
+        }
+        key = names.get(index);
+      }
+      var value = decode(input, builder.typeProvider.apply(key));
+      builder.populater.populate(instance, key, value);
+    }
+    return builder.finisher.apply(instance);
   }
 
   public void addTypeMatcher(TypeMatcher typeMatcher) {
@@ -184,7 +565,10 @@ public class JSONReader {
     return typeMatchers.reversed().stream()
         .flatMap(typeMatcher -> typeMatcher.match(type).stream())
         .findFirst()
-        .orElseGet(() -> ObjectBuilder.bean(Utils.erase(type)));
+        .orElseGet(() -> {
+          var erasedType = Utils.erase(type);
+          return CODEC_CLASS_VALUE.get(erasedType).orElseGet(() -> ObjectBuilder.bean(erasedType));
+        });
   }
 }
 
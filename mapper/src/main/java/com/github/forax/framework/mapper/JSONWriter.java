@@ -1,54 +1,959 @@
 package com.github.forax.framework.mapper;
 
-import java.beans.PropertyDescriptor;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 public final class JSONWriter {
   public String toJSON(Object o) {
-    return switch (o) {
-      case null -> "null";
-      case String s -> '"' + s + '"';
-      case Boolean b -> b.toString();
-      case Integer i -> i.toString();
-      case Double d -> d.toString();
-      default -> beanToJson(o);
+    var dispatch = dispatch(o);
+    var classData = dispatch == null ? null : dispatch.classData;
+    var out = new JSONOutput.CharOutput(null, classData == null ? 0 : classData.expectedSize());
+    try {
+      toJSONRoot(o, dispatch, out);
+      if (classData != null) {
+        classData.updateSize(out.size());
+      }
+      return out.toString();
+    } finally {
+      out.release();
+    }
+  }
+
+  public void toJSON(Object o, Appendable appendable) {
+    write(o, JSONOutput.of(appendable));
+  }
+
+  public void toJSON(Object o, Writer writer) {
+    toJSON(o, (Appendable) writer);
+  }
+
+  public byte[] toJSONBytes(Object o) {
+    var dispatch = dispatch(o);
+    var classData = dispatch == null ? null : dispatch.classData;
+    var out = new JSONOutput.ByteOutput(null, classData == null ? 0 : classData.expectedSize());
+    try {
+      toJSONRoot(o, dispatch, out);
+      if (classData != null) {
+        classData.updateSize(out.size());
+      }
+      return out.toByteArray();
+    } finally {
+      out.release();
+    }
+  }
+
+  public void toJSON(Object o, OutputStream outputStream) {
+    write(o, JSONOutput.of(outputStream));
+  }
+
+  public void toJSON(Object o, WritableByteChannel channel) {
+    write(o, JSONOutput.of(channel));
+  }
+
+  public void toJSON(Object o, ByteBuffer byteBuffer) {
+    write(o, JSONOutput.of(byteBuffer));
+  }
+
+  private void write(Object o, JSONOutput out) {
+    try {
+      toJSONRoot(o, out);
+      out.flush();
+    } finally {
+      out.release();
+    }
+  }
+
+  private static final int DEFAULT_LINES_BATCH = 1_000;
+
+  /**
+   * Writes each element of the stream as a JSON document on its own line (JSON Lines / NDJSON),
+   * the writer is flushed every 1000 elements.
+   * @param stream a stream of elements.
+   * @param writer the writer to write to.
+   * @see #writeLines(Stream, Writer, int)
+   */
+  public void writeLines(Stream<?> stream, Writer writer) {
+    writeLines(stream, writer, DEFAULT_LINES_BATCH);
+  }
+
+  /**
+   * Writes each element of the stream as a JSON document on its own line (JSON Lines / NDJSON).
+   * The elements are consumed one by one, so the memory used does not depend on the size of the stream,
+   * the writer is flushed every {@code batchSize} elements and at the end.
+   * @param stream a stream of elements.
+   * @param writer the writer to write to.
+   * @param batchSize the number of elements written between two flushes.
+   * @throws IllegalArgumentException if the batch size is not positive.
+   */
+  public void writeLines(Stream<?> stream, Writer writer, int batchSize) {
+    checkLines(stream, batchSize);
+    Objects.requireNonNull(writer);
+    writeLines(stream, JSONOutput.of(writer), batchSize, writer);
+  }
+
+  /**
+   * Writes each element of the stream as a JSON document on its own line (JSON Lines / NDJSON) encoded in UTF-8.
+   * @param stream a stream of elements.
+   * @param channel the channel to write to.
+   * @see #writeLines(Stream, WritableByteChannel, int)
+   */
+  public void writeLines(Stream<?> stream, WritableByteChannel channel) {
+    writeLines(stream, channel, DEFAULT_LINES_BATCH);
+  }
+
+  /**
+   * Writes each element of the stream as a JSON document on its own line (JSON Lines / NDJSON) encoded in UTF-8,
+   * the lines are written to the channel every {@code batchSize} elements and at the end.
+   * @param stream a stream of elements.
+   * @param channel the channel to write to.
+   * @param batchSize the number of elements written between two flushes.
+   * @throws IllegalArgumentException if the batch size is not positive.
+   */
+  public void writeLines(Stream<?> stream, WritableByteChannel channel, int batchSize) {
+    checkLines(stream, batchSize);
+    Objects.requireNonNull(channel);
+    writeLines(stream, JSONOutput.of(channel), batchSize, null);
+  }
+
+  private static void checkLines(Stream<?> stream, int batchSize) {
+    Objects.requireNonNull(stream);
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("invalid batch size " + batchSize);
+    }
+  }
+
+  private void writeLines(Stream<?> stream, JSONOutput out, int batchSize, Flushable flushable) {
+    try {
+      var count = 0;
+      for (var iterator = stream.iterator(); iterator.hasNext();) {
+        toJSONRoot(iterator.next(), out);
+        out.append('\n');
+        if (++count == batchSize) {
+          count = 0;
+          flush(out, flushable);
+        }
+      }
+      flush(out, flushable);
+    } finally {
+      out.release();
+    }
+  }
+
+  private static void flush(JSONOutput out, Flushable flushable) {
+    out.flush();
+    if (flushable == null) {
+      return;
+    }
+    try {
+      flushable.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Encodes an object in a compact binary format with the keys as strings.
+   * @param o an object.
+   * @return the binary encoding of the object.
+   * @see #toBinary(Object, boolean)
+   */
+  public byte[] toBinary(Object o) {
+    return toBinary(o, false);
+  }
+
+  /**
+   * Encodes an object in a compact binary format (CBOR-like), the numbers are stored as fixed width
+   * binary values and the strings are prefixed by their length.
+   * The beans and the records are encoded using the same properties as {@link #toJSON(Object)},
+   * if {@code fieldIndices} is true, the keys are replaced by the indices of the properties,
+   * so the data can only be decoded with the same version of the classes.
+   * The configurations and the mode {@link #omitDefaults(boolean)} are not used.
+   *
+   * @param o an object.
+   * @param fieldIndices true if the properties are encoded with their indices instead of their keys.
+   * @return the binary encoding of the object.
+   * @see JSONReader#parseBinary(byte[], java.lang.reflect.Type)
+   */
+  public byte[] toBinary(Object o, boolean fieldIndices) {
+    var out = new Binary.Output();
+    try {
+      toBinary(o, out, fieldIndices);
+      return out.toByteArray();
+    } finally {
+      out.release();
+    }
+  }
+
+  private static void toBinary(Object o, Binary.Output out, boolean fieldIndices) {
+    switch (o) {
+      case null -> out.writeTag(Binary.NULL);
+      case Boolean b -> out.writeTag(b ? Binary.TRUE : Binary.FALSE);
+      case Integer i -> out.writeInt(i);
+      case Short s -> out.writeInt(s);
+      case Byte b -> out.writeInt(b);
+      case Long l -> out.writeLong(l);
+      case Float f -> out.writeFloat(f);
+      case Double d -> out.writeDouble(d);
+      case Character c -> out.writeChar(c);
+      case String s -> out.writeString(s);
+      case char[] array -> out.writeString(new String(array));
+      case Object[] array -> {
+        out.writeTag(Binary.ARRAY);
+        out.writeLength(array.length);
+        for (var element : array) {
+          toBinary(element, out, fieldIndices);
+        }
+      }
+      case Map<?, ?> map -> {
+        out.writeTag(Binary.OBJECT);
+        out.writeLength(map.size());
+        for (var entry : map.entrySet()) {
+          out.writeUTF8(String.valueOf(entry.getKey()).getBytes(StandardCharsets.UTF_8));
+          toBinary(entry.getValue(), out, fieldIndices);
+        }
+      }
+      case Collection<?> collection -> {
+        out.writeTag(Binary.ARRAY);
+        out.writeLength(collection.size());
+        for (var element : collection) {
+          toBinary(element, out, fieldIndices);
+        }
+      }
+      case Iterable<?> iterable -> {
+        var list = new ArrayList<>();
+        iterable.forEach(list::add);
+        toBinary(list, out, fieldIndices);
+      }
+      default -> {
+        var type = o.getClass();
+        if (type.isArray()) {  // an array of primitive types
+          toBinaryPrimitiveArray(o, out);
+          return;
+        }
+        var classData = DATA_CLASS_VALUE.get(type);
+        var getters = classData.getters();
+        var binaryKeys = classData.binaryKeys();
+        out.writeTag(fieldIndices ? Binary.INDEXED_OBJECT : Binary.OBJECT);
+        out.writeLength(getters.size());
+        for (var i = 0; i < getters.size(); i++) {
+          if (fieldIndices) {
+            out.writeLength(i);
+          } else {
+            out.writeUTF8(binaryKeys.get(i));
+          }
+          toBinary(Utils.invokeGetter(getters.get(i), o), out, fieldIndices);
+        }
+      }
+    }
+  }
+
+  private static void toBinaryPrimitiveArray(Object array, Binary.Output out) {
+    out.writeTag(Binary.ARRAY);
+    switch (array) {
+      case int[] values -> {
+        out.writeLength(values.length);
+        for (var value : values) {
+          out.writeInt(value);
+        }
+      }
+      case long[] values -> {
+        out.writeLength(values.length);
+        for (var value : values) {
+          out.writeLong(value);
+        }
+      }
+      case double[] values -> {
+        out.writeLength(values.length);
+        for (var value : values) {
+          out.writeDouble(value);
+        }
+      }
+      case float[] values -> {
+        out.writeLength(values.length);
+        for (var value : values) {
+          out.writeFloat(value);
+        }
+      }
+      case boolean[] values -> {
+        out.writeLength(values.length);
+        for (var value : values) {
+          out.writeTag(value ? Binary.TRUE : Binary.FALSE);
+        }
+      }
+      case short[] values -> {
+        out.writeLength(values.length);
+        for (var value : values) {
+          out.writeInt(value);
+        }
+      }
+      case byte[] values -> {
+        out.writeLength(values.length);
+        for (var value : values) {
+          out.writeInt(value);
+        }
+      }
+      default -> throw new AssertionError("unknown array type " + array.getClass());
+    }
+  }
+
+  private JSONMetrics metrics;
+
+  /**
+   * Records the number, the size and the duration of the serializations per root type in the metrics,
+   * the root type of {@code null} is {@code Void.class}.
+   * @param metrics the metrics to update.
+   */
+  public void metrics(JSONMetrics metrics) {
+    this.metrics = Objects.requireNonNull(metrics);
+  }
+
+  private void toJSONRoot(Object o, JSONOutput out) {
+    toJSONRoot(o, dispatch(o), out);
+  }
+
+  private void toJSONRoot(Object o, Dispatch dispatch, JSONOutput out) {
+    var event = new JSONEvents.Serialization();
+    var metrics = this.metrics;
+    if (metrics == null && !event.isEnabled()) {
+      generate(o, dispatch, out);
+      return;
+    }
+    var type = o == null ? Void.class : o.getClass();
+    var size = out.size();
+    var allocated = event.isEnabled() ? JSONEvents.allocatedBytes() : 0L;
+    var start = System.nanoTime();
+    event.begin();
+    generate(o, dispatch, out);
+    event.end();
+    var nanos = System.nanoTime() - start;
+    size = out.size() - size;
+    if (event.shouldCommit()) {
+      event.rootType = type;
+      event.size = size;
+      event.allocated = JSONEvents.allocatedSince(allocated);
+      event.commit();
+    }
+    if (metrics != null) {
+      metrics.record(type, size, nanos);
+    }
+  }
+
+  public void toJSON(Object o, JSONOutput out) {
+    Objects.requireNonNull(out);
+    generate(o, dispatch(o), out);
+  }
+
+  private void generate(Object o, Dispatch dispatch, JSONOutput out) {
+    if (dispatch == null) {
+      out.append("null");
+      return;
+    }
+    dispatch.generator.generate(this, o, out);
+  }
+
+  /**
+   * The generator of a class and, for a record or a bean, the class data used to presize the output.
+   */
+  private record Dispatch(Generator generator, ClassData classData) {}
+
+  private Dispatch dispatch(Object o) {
+    return o == null ? null : dispatchClassValue.get(o.getClass());
+  }
+
+  // read by dispatchClassValue from any thread that uses the writer
+  private final ConcurrentHashMap<Class<?>, Generator> configurations = new ConcurrentHashMap<>();
+
+  private final ClassValue<Dispatch> dispatchClassValue = new ClassValue<>() {
+    @Override
+    protected Dispatch computeValue(Class<?> type) {
+      var generator = configurations.get(type);
+      if (generator != null) {
+        return new Dispatch(generator, null);
+      }
+      return defaultDispatch(type);
+    }
+  };
+
+  public void configure(Class<?> type, Generator generator) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(generator);
+    if (configurations.putIfAbsent(type, generator) != null) {
+      throw new IllegalStateException("configuration for " + type.getName() + " already exists");
+    }
+    dispatchClassValue.remove(type);
+  }
+
+  public <T> void configure(Class<T> type, Function<? super T, String> function) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(function);
+    configure(type, (JSONWriter writer, Object o, JSONOutput out) -> out.append(function.apply(type.cast(o))));
+  }
+
+  private static final Map<Class<?>, Generator> BUILTIN_GENERATORS = Map.ofEntries(
+      Map.entry(String.class, (writer, o, out) -> out.appendString((String) o)),
+      Map.entry(Boolean.class, (writer, o, out) -> out.appendBoolean((Boolean) o)),
+      Map.entry(Integer.class, (writer, o, out) -> out.appendInt((Integer) o)),
+      Map.entry(Long.class, (writer, o, out) -> out.appendLong((Long) o)),
+      Map.entry(Short.class, (writer, o, out) -> out.appendInt((Short) o)),
+      Map.entry(Byte.class, (writer, o, out) -> out.appendInt((Byte) o)),
+      Map.entry(Double.class, (writer, o, out) -> out.appendDouble((Double) o)),
+      Map.entry(Float.class, (writer, o, out) -> out.appendFloat((Float) o)),
+      Map.entry(Character.class, (writer, o, out) -> appendChar(out, (Character) o)),
+      Map.entry(int[].class, (writer, o, out) -> arrayToJson((int[]) o, out)),
+      Map.entry(long[].class, (writer, o, out) -> arrayToJson((long[]) o, out)),
+      Map.entry(double[].class, (writer, o, out) -> arrayToJson((double[]) o, out)),
+      Map.entry(float[].class, (writer, o, out) -> arrayToJson((float[]) o, out)),
+      Map.entry(short[].class, (writer, o, out) -> arrayToJson((short[]) o, out)),
+      Map.entry(byte[].class, (writer, o, out) -> arrayToJson((byte[]) o, out)),
+      Map.entry(boolean[].class, (writer, o, out) -> arrayToJson((boolean[]) o, out)),
+      Map.entry(char[].class, (writer, o, out) -> out.appendString(new String((char[]) o)))
+  );
+
+  private static Dispatch defaultDispatch(Class<?> type) {
+    var generator = BUILTIN_GENERATORS.get(type);
+    if (generator != null) {
+      return new Dispatch(generator, null);
+    }
+    if (type.isArray()) {  // the arrays of primitive types are builtins
+      return new Dispatch((writer, o, out) -> writer.arrayToJson((Object[]) o, out), null);
+    }
+    if (Map.class.isAssignableFrom(type)) {
+      return new Dispatch((writer, o, out) -> writer.mapToJson((Map<?, ?>) o, out), null);
+    }
+    if (Iterable.class.isAssignableFrom(type)) {
+      return new Dispatch((writer, o, out) -> writer.iterableToJson((Iterable<?>) o, out), null);
+    }
+    var classData = DATA_CLASS_VALUE.get(type);
+    return new Dispatch(
+        (writer, o, out) -> (writer.omitDefaults ? classData.compactSerializer() : classData.serializer()).generate(writer, o, out),
+        classData);
+  }
+
+  private void arrayToJson(Object[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      toJSON(array[i], out);
+    }
+    out.append(']');
+  }
+
+  private boolean omitDefaults;
+
+  /**
+   * If true, the properties of the beans and records with a default value are not serialized.
+   * The default values are {@code null}, the zero of the primitive types, {@code false},
+   * the empty collections, the empty maps and the empty arrays.
+   * The check is done by the per class serializers, once generated there is no extra call per property.
+   *
+   * @param omitDefaults true if the properties with a default value should not be serialized.
+   */
+  public void omitDefaults(boolean omitDefaults) {
+    this.omitDefaults = omitDefaults;
+  }
+
+  static boolean isEmpty(Object value) {
+    return switch (value) {
+      case null -> true;
+      case Collection<?> collection -> collection.isEmpty();
+      case Map<?, ?> map -> map.isEmpty();
+      case Object[] array -> array.length == 0;
+      default -> value.getClass().isArray() && Array.getLength(value) == 0;
+    };
+  }
+
+  private static boolean isDefault(Object value, Class<?> type) {
+    if (!type.isPrimitive()) {
+      return isEmpty(value);
+    }
+    return switch (value) {
+      case Boolean b -> !b;
+      case Character c -> c == 0;
+      case Float f -> Float.floatToRawIntBits(f) == 0;
+      case Double d -> Double.doubleToRawLongBits(d) == 0;
+      case Number n -> n.longValue() == 0;
+      default -> throw new AssertionError("unknown primitive value " + value);
     };
   }
 
-  private String beanToJson(Object o) {
-    return DATA_CLASS_VALUE.get(o.getClass()).stream()
-          .map(generator -> generator.generate(this, o))
-          .collect(Collectors.joining(", ", "{", "}"));
+  private ForkJoinPool pool;
+  private int parallelThreshold;
+
+  /**
+   * Serializes the {@link RandomAccess} lists with at least {@code threshold} elements in parallel,
+   * each chunk of the list is serialized in its own buffer by a task of the pool,
+   * the buffers are then appended in order.
+   *
+   * @param pool the pool used to serialize the chunks.
+   * @param threshold the minimum size of a list to be serialized in parallel.
+   */
+  public void parallel(ForkJoinPool pool, int threshold) {
+    Objects.requireNonNull(pool);
+    if (threshold < 1) {
+      throw new IllegalArgumentException("invalid threshold " + threshold);
+    }
+    this.pool = pool;
+    this.parallelThreshold = threshold;
+  }
+
+  private static final int MIN_CHUNK_SIZE = 256;
+
+  private void parallelListToJson(List<?> list, JSONOutput out) {
+    var size = list.size();
+    var chunkSize = Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4));
+    var tasks = new ArrayList<ForkJoinTask<JSONOutput>>();
+    for (var from = 0; from < size; from += chunkSize) {
+      var start = from;
+      var end = Math.min(size, from + chunkSize);
+      tasks.add(pool.submit(() -> {
+        var chunk = out.newChunk();
+        listToJson(list, start, end, chunk);
+        return chunk;
+      }));
+    }
+    for (var i = 0; i < tasks.size(); i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      var chunk = tasks.get(i).join();
+      out.appendChunk(chunk);
+      chunk.release();
+    }
+  }
+
+  private void listToJson(List<?> list, int from, int to, JSONOutput out) {
+    for (var i = from; i < to; i++) {
+      if (i != from) {
+        out.append(", ");
+      }
+      toJSON(list.get(i), out);
+    }
+  }
+
+  private void iterableToJson(Iterable<?> iterable, JSONOutput out) {
+    out.append('[');
+    if (iterable instanceof List<?> list && list instanceof RandomAccess) {
+      // avoid the iterator
+      if (pool != null && list.size() >= parallelThreshold) {
+        parallelListToJson(list, out);
+      } else {
+        listToJson(list, 0, list.size(), out);
+      }
+    } else {
+      var separator = "";
+      for (var element : iterable) {
+        out.append(separator);
+        toJSON(element, out);
+        separator = ", ";
+      }
+    }
+    out.append(']');
+  }
+
+  private void mapToJson(Map<?, ?> map, JSONOutput out) {
+    out.append('{');
+    var separator = "";
+    for (var entry : map.entrySet()) {
+      out.append(separator);
+      out.appendString(String.valueOf(entry.getKey()));
+      out.append(": ");
+      toJSON(entry.getValue(), out);
+      separator = ", ";
+    }
+    out.append('}');
+  }
+
+  static void appendChar(JSONOutput out, char c) {
+    if (JSONOutput.needsEscape(c)) {
+      out.appendString(String.valueOf(c));
+      return;
+    }
+    out.append('"');
+    out.append(c);
+    out.append('"');
+  }
+
+  private static void arrayToJson(int[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.appendInt(array[i]);
+    }
+    out.append(']');
+  }
+
+  private static void arrayToJson(long[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.appendLong(array[i]);
+    }
+    out.append(']');
+  }
+
+  private static void arrayToJson(double[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.appendDouble(array[i]);
+    }
+    out.append(']');
+  }
+
+  private static void arrayToJson(float[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.appendFloat(array[i]);
+    }
+    out.append(']');
+  }
+
+  private static void arrayToJson(short[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.appendInt(array[i]);
+    }
+    out.append(']');
+  }
+
+  private static void arrayToJson(byte[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.appendInt(array[i]);
+    }
+    out.append(']');
   }
 
-  private static final ClassValue<List<Generator>> DATA_CLASS_VALUE = new ClassValue<>() {
+  private static void arrayToJson(boolean[] array, JSONOutput out) {
+    out.append('[');
+    for (var i = 0; i < array.length; i++) {
+      if (i != 0) {
+        out.append(", ");
+      }
+      out.appendBoolean(array[i]);
+    }
+    out.append(']');
+  }
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  /**
+   * A property, {@code name} is the JSON key (maybe renamed by {@link JSONProperty}),
+   * {@code javaName} is the name of the bean property or of the record component.
+   */
+  record Property(String name, String javaName, Method method, MethodHandle getter) {
+    Property(String name, String javaName, Method method) {
+      this(name, javaName, method, Utils.unreflect(method));
+    }
+  }
+
+  static final class ClassData {
+    /**
+     * Number of serializations of a class before a dedicated serializer is generated.
+     */
+    static final int HOT_THRESHOLD = 1_000;
+
+    /**
+     * Maximum size estimate, so a huge instance does not make the next calls to retain huge buffers.
+     */
+    private static final int MAX_SIZE_ESTIMATE = BufferPool.MAX_CAPACITY;
+
+    private final Class<?> type;
+    private List<Property> properties;
+    private List<Generator> generators;
+    private Generator serializer;
+    private int hits;
+    private List<JSONOutput.Key> keys;
+    private List<MethodHandle> getters;
+    private List<byte[]> binaryKeys;
+    private List<String> names;
+    private Generator compactSerializer = this::generateAllCompact;
+    private int compactHits;
+    private int sizeEstimate;
+
+    private ClassData(Class<?> type, Generator codec) {
+      this.type = type;
+      if (codec != null) {
+        serializer = codec;
+        hits = HOT_THRESHOLD;
+      } else {
+        serializer = this::generateAll;
+      }
+    }
+
+    // the following fields are initialized lazily without synchronization,
+    // in the worst case, the properties are computed or the serializer is generated twice,
+    // sizeEstimate is also updated without synchronization, a lost update is harmless
+
+    List<Property> properties() {
+      var properties = this.properties;
+      if (properties == null) {
+        properties = this.properties = type.isRecord() ? recordProperties(type) : beanProperties(type);
+      }
+      return properties;
+    }
+
+    List<Generator> generators() {
+      var generators = this.generators;
+      if (generators == null) {
+        generators = this.generators = properties().stream()
+            .map(JSONWriter::generator)
+            .toList();
+      }
+      return generators;
+    }
+
+    private void generateAll(JSONWriter writer, Object bean, JSONOutput out) {
+      var generators = generators();
+      out.append('{');
+      for (var i = 0; i < generators.size(); i++) {
+        if (i != 0) {
+          out.append(", ");
+        }
+        generators.get(i).generate(writer, bean, out);
+      }
+      out.append('}');
+    }
+
+    /**
+     * Returns the expected size of the serialization of an instance as root object,
+     * the running estimate plus a margin of 25% so most of the calls do not need to grow the buffer.
+     */
+    int expectedSize() {
+      var estimate = sizeEstimate;
+      return estimate + (estimate >> 2);
+    }
+
+    /**
+     * Updates the running estimate, an exponential moving average (alpha = 1/8) of the serialized sizes.
+     */
+    void updateSize(long size) {
+      var newSize = (int) Math.min(size, MAX_SIZE_ESTIMATE);
+      var estimate = sizeEstimate;
+      sizeEstimate = estimate == 0 ? newSize : estimate + ((newSize - estimate) >> 3);
+    }
+
+    private List<JSONOutput.Key> keys() {
+      var keys = this.keys;
+      if (keys == null) {
+        keys = this.keys = properties().stream()
+            .map(property -> JSONOutput.Key.of(property.name))
+            .toList();
+      }
+      return keys;
+    }
+
+    List<String> names() {
+      var names = this.names;
+      if (names == null) {
+        names = this.names = properties().stream()
+            .map(Property::javaName)
+            .toList();
+      }
+      return names;
+    }
+
+    private List<byte[]> binaryKeys() {
+      var binaryKeys = this.binaryKeys;
+      if (binaryKeys == null) {
+        binaryKeys = this.binaryKeys = properties().stream()
+            .map(property -> property.javaName.getBytes(StandardCharsets.UTF_8))
+            .toList();
+      }
+      return binaryKeys;
+    }
+
+    private List<MethodHandle> getters() {
+      var getters = this.getters;
+      if (getters == null) {
+        getters = this.getters = properties().stream()
+            .map(property -> property.getter.asType(GETTER_TYPE))
+            .toList();
+      }
+      return getters;
+    }
+
+    private void generateAllCompact(JSONWriter writer, Object bean, JSONOutput out) {
+      var properties = properties();
+      var keys = keys();
+      var getters = getters();
+      out.append('{');
+      var separator = false;
+      for (var i = 0; i < properties.size(); i++) {
+        var value = Utils.invokeGetter(getters.get(i), bean);
+        if (isDefault(value, properties.get(i).method.getReturnType())) {
+          continue;
+        }
+        if (separator) {
+          out.append(", ");
+        }
+        out.appendKey(keys.get(i));
+        writer.toJSON(value, out);
+        separator = true;
+      }
+      out.append('}');
+    }
+
+    /**
+     * Same as {@link #serializer()} but the serializer omits the properties with a default value,
+     * the generated codecs do not support that mode.
+     */
+    Generator compactSerializer() {
+      if (compactHits < HOT_THRESHOLD && ++compactHits == HOT_THRESHOLD) {
+        compactSerializer = Serializers.compile(properties(), true);
+      }
+      return compactSerializer;
+    }
+
+    Generator serializer() {
+      if (hits < HOT_THRESHOLD && ++hits == HOT_THRESHOLD) {
+        serializer = Serializers.compile(properties());
+      }
+      return serializer;
+    }
+  }
+
+  /**
+   * Returns the Java names (not the JSON keys) of the properties of a bean or a record
+   * in the order used to compute the field indices.
+   */
+  static List<String> propertyNames(Class<?> type) {
+    return DATA_CLASS_VALUE.get(type).names();
+  }
+
+  static int expectedSize(Class<?> type) {
+    return DATA_CLASS_VALUE.get(type).expectedSize();
+  }
+
+  private static final ClassValue<ClassData> DATA_CLASS_VALUE = new ClassValue<>() {
     @Override
-    protected List<Generator> computeValue(Class<?> type) {
-      PropertyDescriptor[] properties = Utils.beanInfo(type).getPropertyDescriptors();
-      return Arrays.stream(properties)
-        .filter(property -> !property.getName().equals("class"))
-        .<Generator>map(property -> {
+    protected ClassData computeValue(Class<?> type) {
+      return new ClassData(type, Utils.generatedCodec(type));
+    }
+  };
+
+  private static Generator generator(Property property) {
+    var key = JSONOutput.Key.of(property.name);
+    var type = property.method.getReturnType();
+    if (type.isPrimitive()) {
+      // read the value with a primitive typed getter and append it without boxing
+      var appender = primitiveAppender(type);
+      var getter = property.getter.asType(MethodType.methodType(appender.type().parameterType(1), Object.class));
+      var writer = MethodHandles.collectArguments(appender, 1, getter);
+      return (JSONWriter w, Object o, JSONOutput out) -> {
+        out.appendKey(key);
+        Utils.invokeWriter(writer, out, o);
+      };
+    }
+    var getter = property.getter.asType(GETTER_TYPE);
+    return (JSONWriter w, Object o, JSONOutput out) -> {
+      out.appendKey(key);
+      w.toJSON(Utils.invokeGetter(getter, o), out);
+    };
+  }
+
+  private static final MethodHandle APPEND_INT, APPEND_LONG, APPEND_FLOAT, APPEND_DOUBLE, APPEND_BOOLEAN, APPEND_CHAR;
+  static {
+    var lookup = MethodHandles.lookup();
+    try {
+      APPEND_INT = lookup.findVirtual(JSONOutput.class, "appendInt", MethodType.methodType(void.class, int.class));
+      APPEND_LONG = lookup.findVirtual(JSONOutput.class, "appendLong", MethodType.methodType(void.class, long.class));
+      APPEND_FLOAT = lookup.findVirtual(JSONOutput.class, "appendFloat", MethodType.methodType(void.class, float.class));
+      APPEND_DOUBLE = lookup.findVirtual(JSONOutput.class, "appendDouble", MethodType.methodType(void.class, double.class));
+      APPEND_BOOLEAN = lookup.findVirtual(JSONOutput.class, "appendBoolean", MethodType.methodType(void.class, boolean.class));
+      APPEND_CHAR = lookup.findStatic(JSONWriter.class, "appendChar", MethodType.methodType(void.class, JSONOutput.class, char.class));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static MethodHandle primitiveAppender(Class<?> type) {
+    if (type == int.class || type == short.class || type == byte.class) {
+      return APPEND_INT;
+    }
+    if (type == long.class) {
+      return APPEND_LONG;
+    }
+    if (type == float.class) {
+      return APPEND_FLOAT;
+    }
+    if (type == double.class) {
+      return APPEND_DOUBLE;
+    }
+    if (type == boolean.class) {
+      return APPEND_BOOLEAN;
+    }
+    if (type == char.class) {
+      return APPEND_CHAR;
+    }
+    throw new AssertionError("unknown primitive type " + type);
+  }
+
+  private static String propertyName(String name, JSONProperty annotation) {
+    return annotation != null ? annotation.value() : name;
+  }
+
+  private static List<Property> beanProperties(Class<?> type) {
+    return Arrays.stream(Utils.beanInfo(type).getPropertyDescriptors())
+        .filter(property -> !property.getName().equals("class") && property.getReadMethod() != null)
+        .map(property -> {
           var method = property.getReadMethod();
-          var annotation = method.getAnnotation(JSONProperty.class);
-          var key = "\"" + (annotation != null ? annotation.value() : property.getName()) + "\": ";
-          return (JSONWriter w, Object o) -> key + w.toJSON(Utils.invokeMethod(o, method));
+          return new Property(propertyName(property.getName(), method.getAnnotation(JSONProperty.class)), property.getName(), method);
         })
         .toList();
-    }
-  };
+  }
 
-//  private static List<PropertyDescriptor> beanProperties(Class<?> type) {
-//    return Utils.beanInfo(type).getPropertyDescriptors();
-//  }
-//
-//  private static List<PropertyDescriptor> recordProperties(Class<?> type) {
-//    // TODO
-//  }
+  private static List<Property> recordProperties(Class<?> type) {
+    return Arrays.stream(type.getRecordComponents())
+        .map(component -> new Property(
+            propertyName(component.getName(), component.getAnnotation(JSONProperty.class)),
+            component.getName(),
+            component.getAccessor()))
+        .toList();
+  }
 
   @FunctionalInterface
   public interface Generator {
-    String generate(JSONWriter writer, Object bean);
+    void generate(JSONWriter writer, Object bean, JSONOutput out);
   }
 }
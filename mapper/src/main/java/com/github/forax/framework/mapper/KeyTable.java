@@ -0,0 +1,64 @@
+package com.github.forax.framework.mapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A symbol table of the keys of a class, the keys are matched directly on the UTF-8 bytes
+ * of the input and the same String instance is returned for the same key,
+ * so no String is allocated and the hash code of the key is already computed.
+ *
+ * The table is an open addressing hash table with a load factor of at most 1/2,
+ * each slot stores the UTF-8 bytes of the key and the key.
+ */
+final class KeyTable {
+  static final KeyTable EMPTY = new KeyTable(List.of());
+
+  private final byte[][] bytes;
+  private final String[] keys;
+  private final int mask;
+
+  KeyTable(List<String> keys) {
+    var capacity = Integer.highestOneBit(Math.max(1, keys.size()) * 2) << 1;
+    this.bytes = new byte[capacity][];
+    this.keys = new String[capacity];
+    this.mask = capacity - 1;
+    loop: for (var key : keys) {
+      var utf8 = key.getBytes(StandardCharsets.UTF_8);
+      var slot = hash(utf8, 0, utf8.length) & mask;
+      for (; this.keys[slot] != null; slot = (slot + 1) & mask) {
+        if (this.keys[slot].equals(key)) {  // keep the first instance
+          continue loop;
+        }
+      }
+      this.bytes[slot] = utf8;
+      this.keys[slot] = key;
+    }
+  }
+
+  // FNV-1a
+  private static int hash(byte[] buffer, int start, int end) {
+    var hash = 0x811c9dc5;
+    for (var i = start; i < end; i++) {
+      hash = (hash ^ buffer[i]) * 0x01000193;
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Returns the key encoded in UTF-8 by the bytes between {@code start} and {@code end},
+   * or {@code null} if the key is not in the table.
+   */
+  String lookup(byte[] buffer, int start, int end) {
+    for (var slot = hash(buffer, start, end) & mask; ; slot = (slot + 1) & mask) {
+      var utf8 = bytes[slot];
+      if (utf8 == null) {
+        return null;
+      }
+      if (Arrays.equals(utf8, 0, utf8.length, buffer, start, end)) {
+        return keys[slot];
+      }
+    }
+  }
+}
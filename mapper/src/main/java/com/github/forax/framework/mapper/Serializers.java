@@ -0,0 +1,221 @@
+package com.github.forax.framework.mapper;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates, for a class, a hidden class implementing {@link JSONWriter.Generator} with
+ * a straight-line code that writes each key and calls each getter.
+ * The keys and the getters are stored as class data and loaded with constant dynamic,
+ * so they are true constants for the JIT and the getters calls can be inlined.
+ */
+final class Serializers {
+  private Serializers() {
+    throw new AssertionError();
+  }
+
+  private static final String OUTPUT = Type.getInternalName(JSONOutput.class);
+  private static final String WRITER = Type.getInternalName(JSONWriter.class);
+  private static final String KEY_DESCRIPTOR = Type.getDescriptor(JSONOutput.Key.class);
+  private static final String METHOD_HANDLE = Type.getInternalName(MethodHandle.class);
+  private static final String METHOD_HANDLE_DESCRIPTOR = Type.getDescriptor(MethodHandle.class);
+  private static final Handle CLASS_DATA_AT = new Handle(H_INVOKESTATIC,
+      Type.getInternalName(MethodHandles.class), "classDataAt",
+      MethodType.methodType(Object.class, MethodHandles.Lookup.class, String.class, Class.class, int.class).toMethodDescriptorString(),
+      false);
+
+  private record Appender(Class<?> type, int opcode, String owner, String name, String descriptor) {}
+
+  private static Appender appender(Class<?> type) {
+    if (type == int.class || type == short.class || type == byte.class) {
+      return new Appender(int.class, INVOKEVIRTUAL, OUTPUT, "appendInt", "(I)V");
+    }
+    if (type == long.class) {
+      return new Appender(long.class, INVOKEVIRTUAL, OUTPUT, "appendLong", "(J)V");
+    }
+    if (type == float.class) {
+      return new Appender(float.class, INVOKEVIRTUAL, OUTPUT, "appendFloat", "(F)V");
+    }
+    if (type == double.class) {
+      return new Appender(double.class, INVOKEVIRTUAL, OUTPUT, "appendDouble", "(D)V");
+    }
+    if (type == boolean.class) {
+      return new Appender(boolean.class, INVOKEVIRTUAL, OUTPUT, "appendBoolean", "(Z)V");
+    }
+    if (type == char.class) {
+      return new Appender(char.class, INVOKESTATIC, WRITER, "appendChar", "(L" + OUTPUT + ";C)V");
+    }
+    throw new AssertionError("unknown primitive type " + type);
+  }
+
+  private static ConstantDynamic classData(String descriptor, int index) {
+    return new ConstantDynamic("_", descriptor, CLASS_DATA_AT, index);
+  }
+
+  static JSONWriter.Generator compile(List<JSONWriter.Property> properties) {
+    return compile(properties, false);
+  }
+
+  /**
+   * Generates a serializer, if {@code omitDefaults} is true, the generated code skips the properties
+   * with a default value (see {@link JSONWriter#omitDefaults(boolean)}) and keeps in a local variable
+   * whether a separator is needed.
+   */
+  static JSONWriter.Generator compile(List<JSONWriter.Property> properties, boolean omitDefaults) {
+    var classData = new ArrayList<>();
+    var writer = new ClassWriter(omitDefaults ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS);
+    writer.visit(V17, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, WRITER + "$Serializer", null, "java/lang/Object",
+        new String[] { Type.getInternalName(JSONWriter.Generator.class) });
+
+    var init = writer.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+    init.visitInsn(RETURN);
+    init.visitMaxs(-1, -1);
+    init.visitEnd();
+
+    // generate(JSONWriter writer, Object bean, JSONOutput out)
+    var mv = writer.visitMethod(ACC_PUBLIC, "generate", "(L" + WRITER + ";Ljava/lang/Object;L" + OUTPUT + ";)V", null, null);
+    mv.visitCode();
+    appendChar(mv, '{');
+    if (omitDefaults) {
+      mv.visitInsn(ICONST_0);
+      mv.visitVarInsn(ISTORE, SEPARATOR_SLOT);
+    }
+    for (var i = 0; i < properties.size(); i++) {
+      var property = properties.get(i);
+      var key = JSONOutput.Key.of(property.name());
+      if (omitDefaults) {
+        generateOmittingDefault(mv, property, key, classData);
+      } else {
+        if (i != 0) {
+          appendSeparator(mv);
+        }
+        generateProperty(mv, property, key, classData);
+      }
+    }
+    appendChar(mv, '}');
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(-1, -1);
+    mv.visitEnd();
+    writer.visitEnd();
+
+    try {
+      var lookup = MethodHandles.lookup()
+          .defineHiddenClassWithClassData(writer.toByteArray(), List.copyOf(classData), true);
+      return (JSONWriter.Generator) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static final int SEPARATOR_SLOT = 4;
+  private static final int VALUE_SLOT = 5;
+
+  private static void generateProperty(MethodVisitor mv, JSONWriter.Property property, JSONOutput.Key key, ArrayList<Object> classData) {
+    appendKey(mv, key, classData);
+    var type = property.method().getReturnType();
+    if (type.isPrimitive()) {
+      var appender = appender(type);
+      mv.visitVarInsn(ALOAD, 3);
+      loadGetterCall(mv, property, appender.type, classData);
+      mv.visitMethodInsn(appender.opcode, appender.owner, appender.name, appender.descriptor, false);
+    } else {
+      mv.visitVarInsn(ALOAD, 1);
+      loadGetterCall(mv, property, Object.class, classData);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitMethodInsn(INVOKEVIRTUAL, WRITER, "toJSON", "(Ljava/lang/Object;L" + OUTPUT + ";)V", false);
+    }
+  }
+
+  private static void generateOmittingDefault(MethodVisitor mv, JSONWriter.Property property, JSONOutput.Key key, ArrayList<Object> classData) {
+    // value = getter(bean); if (value is not a default) { if (separator) ", "; key; value; separator = true; }
+    var skip = new Label();
+    var type = property.method().getReturnType();
+    var valueType = type.isPrimitive() ? appender(type).type : Object.class;
+    var asmType = Type.getType(valueType);
+    loadGetterCall(mv, property, valueType, classData);
+    mv.visitVarInsn(asmType.getOpcode(ISTORE), VALUE_SLOT);
+    mv.visitVarInsn(asmType.getOpcode(ILOAD), VALUE_SLOT);
+    if (valueType == long.class) {
+      mv.visitInsn(LCONST_0);
+      mv.visitInsn(LCMP);
+    } else if (valueType == float.class) {
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "floatToRawIntBits", "(F)I", false);
+    } else if (valueType == double.class) {
+      mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "doubleToRawLongBits", "(D)J", false);
+      mv.visitInsn(LCONST_0);
+      mv.visitInsn(LCMP);
+    }
+    if (valueType == Object.class) {
+      mv.visitMethodInsn(INVOKESTATIC, WRITER, "isEmpty", "(Ljava/lang/Object;)Z", false);
+      mv.visitJumpInsn(IFNE, skip);
+    } else {
+      mv.visitJumpInsn(IFEQ, skip);
+    }
+
+    var noSeparator = new Label();
+    mv.visitVarInsn(ILOAD, SEPARATOR_SLOT);
+    mv.visitJumpInsn(IFEQ, noSeparator);
+    appendSeparator(mv);
+    mv.visitLabel(noSeparator);
+    mv.visitInsn(ICONST_1);
+    mv.visitVarInsn(ISTORE, SEPARATOR_SLOT);
+
+    appendKey(mv, key, classData);
+    if (valueType == Object.class) {
+      mv.visitVarInsn(ALOAD, 1);
+      mv.visitVarInsn(ALOAD, VALUE_SLOT);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitMethodInsn(INVOKEVIRTUAL, WRITER, "toJSON", "(Ljava/lang/Object;L" + OUTPUT + ";)V", false);
+    } else {
+      var appender = appender(type);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitVarInsn(asmType.getOpcode(ILOAD), VALUE_SLOT);
+      mv.visitMethodInsn(appender.opcode, appender.owner, appender.name, appender.descriptor, false);
+    }
+    mv.visitLabel(skip);
+  }
+
+  private static void loadGetterCall(MethodVisitor mv, JSONWriter.Property property, Class<?> valueType, ArrayList<Object> classData) {
+    var getterType = MethodType.methodType(valueType, Object.class);
+    mv.visitLdcInsn(classData(METHOD_HANDLE_DESCRIPTOR, classData.size()));
+    classData.add(property.getter().asType(getterType));
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", getterType.toMethodDescriptorString(), false);
+  }
+
+  private static void appendKey(MethodVisitor mv, JSONOutput.Key key, ArrayList<Object> classData) {
+    mv.visitVarInsn(ALOAD, 3);
+    mv.visitLdcInsn(classData(KEY_DESCRIPTOR, classData.size()));
+    classData.add(key);
+    mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "appendKey", "(" + KEY_DESCRIPTOR + ")V", false);
+  }
+
+  private static void appendSeparator(MethodVisitor mv) {
+    mv.visitVarInsn(ALOAD, 3);
+    mv.visitLdcInsn(", ");
+    mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "append", "(Ljava/lang/String;)V", false);
+  }
+
+  private static void appendChar(MethodVisitor mv, char c) {
+    mv.visitVarInsn(ALOAD, 3);
+    mv.visitIntInsn(BIPUSH, c);
+    mv.visitMethodInsn(INVOKEVIRTUAL, OUTPUT, "append", "(C)V", false);
+  }
+}
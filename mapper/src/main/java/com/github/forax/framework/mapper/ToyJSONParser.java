@@ -1,21 +1,34 @@
 package com.github.forax.framework.mapper;
 
-import static java.lang.Double.parseDouble;
-import static java.lang.Integer.parseInt;
-import static java.util.regex.Pattern.compile;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.IntStream.rangeClosed;
 import static com.github.forax.framework.mapper.ToyJSONParser.Kind.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
 
 /**
- * A Toy JSON parser that do not recognize correctly, unicode characters, escaped strings
- * and i'm sure many more features.
+ * A Toy JSON parser that works directly on UTF-8 bytes
+ * and i'm sure do not recognize correctly many features.
  *
  * @see #parse(String, JSONVisitor)
+ * @see #parse(byte[], JSONVisitor)
+ * @see #parse(InputStream, JSONVisitor)
+ * @see #parse(Path, JSONVisitor)
  */
 class ToyJSONParser {
   private ToyJSONParser() {
@@ -23,60 +36,628 @@ class ToyJSONParser {
   }
 
   enum Kind {
-    NULL("(null)"),
-    TRUE("(true)"),
-    FALSE("(false)"),
-    DOUBLE("([0-9]*\\.[0-9]*)"),
-    INTEGER("([0-9]+)"),
-    STRING("\"([^\\\"]*)\""),
-    LEFT_CURLY("(\\{)"),
-    RIGHT_CURLY("(\\})"),
-    LEFT_BRACKET("(\\[)"),
-    RIGHT_BRACKET("(\\])"),
-    COLON("(\\:)"),
-    COMMA("(\\,)"),
-    BLANK("([ \t]+)")
-    ;
+    NULL,
+    TRUE,
+    FALSE,
+    DOUBLE,
+    INTEGER,
+    STRING,
+    LEFT_CURLY,
+    RIGHT_CURLY,
+    LEFT_BRACKET,
+    RIGHT_BRACKET,
+    COLON,
+    COMMA
+  }
 
-    private final String regex;
+  /**
+   * A source of bytes used to refill the buffer of the lexer.
+   */
+  @FunctionalInterface
+  interface ByteSource {
+    /**
+     * Reads at most {@code length} bytes in the buffer at {@code offset}.
+     * @return the number of bytes read, -1 if there are no more bytes.
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    static ByteSource of(InputStream inputStream) {
+      return inputStream::read;
+    }
 
-    Kind(String regex) {
-      this.regex = regex;
+    /**
+     * The lexer waits for the bytes, so the channel has to be in blocking mode,
+     * a non-blocking channel would make the lexer spin.
+     * @throws IllegalArgumentException if the channel is a non-blocking channel.
+     */
+    static ByteSource of(ReadableByteChannel channel) {
+      if (channel instanceof SelectableChannel selectableChannel && !selectableChannel.isBlocking()) {
+        throw new IllegalArgumentException("the channel must be in blocking mode");
+      }
+      return (buffer, offset, length) -> channel.read(ByteBuffer.wrap(buffer, offset, length));
+    }
+
+    static ByteSource of(ByteBuffer byteBuffer) {
+      var input = byteBuffer.duplicate();
+      return (buffer, offset, length) -> {
+        if (!input.hasRemaining()) {
+          return -1;
+        }
+        var count = Math.min(length, input.remaining());
+        input.get(buffer, offset, count);
+        return count;
+      };
     }
 
-    private static final Kind[] VALUES = values();
+    /**
+     * Encodes the characters of the reader in UTF-8.
+     */
+    static ByteSource of(Reader reader) {
+      var encoder = StandardCharsets.UTF_8.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      var chars = CharBuffer.allocate(4_096).flip();
+      return new ByteSource() {
+        private boolean endOfInput;
+        private boolean flushed;
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+          if (flushed) {
+            return -1;
+          }
+          var output = ByteBuffer.wrap(buffer, offset, length);
+          for (;;) {
+            var result = encoder.encode(chars, output, endOfInput);
+            if (result.isOverflow()) {
+              return output.position() - offset;
+            }
+            if (endOfInput) {
+              encoder.flush(output);
+              flushed = true;
+              var count = output.position() - offset;
+              return count == 0 ? -1 : count;
+            }
+            var count = output.position() - offset;
+            if (count != 0) {
+              return count;
+            }
+            chars.compact();
+            endOfInput = reader.read(chars) == -1;
+            chars.flip();
+          }
+        }
+      };
+    }
   }
 
-  private record Token(Kind kind, String text, int location) {
-    private boolean is(Kind kind) {
-      return this.kind == kind;
+  /**
+   * A hand-written scanner on UTF-8 bytes, the current byte selects the kind of token
+   * then the index is moved to the end of the token.
+   * All the structural characters of JSON are ASCII, so the bytes of a multi-bytes UTF-8 sequence
+   * (all greater than 0x80) can only appear inside a string and are decoded only when the text of
+   * the string is requested.
+   *
+   * If there is a source, the buffer is refilled when the scanner reaches its end,
+   * the bytes of the current token are moved at the beginning of the buffer first,
+   * so the buffer only grows if a token is bigger than the buffer.
+   * The current token is stored in fields that are overwritten by the next call to {@link #next()},
+   * so its value has to be requested before, no token object is allocated.
+   */
+  static final class Lexer {
+    private static final int DEFAULT_CAPACITY = 8_192;
+    private static final int MIN_READ = 64;
+
+    private final ByteSource source;
+    private byte[] buffer;
+    private int limit;
+    private int index;
+    private long offset;  // position of the start of the buffer in the input
+
+    // the current token, start and end are indexes in the buffer, for a string, the quotes are not included
+    // and escaped is true if the string contains escape sequences
+    private Kind kind;
+    private int start;
+    private int end;
+    private boolean escaped;
+
+    Lexer(byte[] buffer, int start, int limit) {
+      this.source = null;
+      this.buffer = buffer;
+      this.index = start;
+      this.limit = limit;
+      this.offset = -start;
+    }
+
+    Lexer(ByteSource source) {
+      this.source = source;
+      this.buffer = BufferPool.BYTES.acquire(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Number of bytes consumed so far.
+     */
+    long position() {
+      return offset + index;
+    }
+
+    void release() {
+      if (source != null) {
+        BufferPool.BYTES.release(buffer);
+        buffer = null;
+      }
+    }
+
+    /**
+     * Refills the buffer, keeping the bytes from {@code keep}, the kept bytes are moved to the beginning
+     * of the buffer, so all the indexes are shifted by {@code keep}.
+     * If there is no more bytes, {@code limit} is unchanged (minus the shift).
+     * @return the shift
+     */
+    private int fill(int keep) {
+      if (source == null) {
+        return 0;
+      }
+      var buffer = this.buffer;
+      var kept = limit - keep;
+      if (buffer.length - kept < MIN_READ) {  // the current token (almost) fills the buffer
+        var newBuffer = BufferPool.BYTES.acquire(buffer.length << 1);
+        System.arraycopy(buffer, keep, newBuffer, 0, kept);
+        BufferPool.BYTES.release(buffer);
+        this.buffer = buffer = newBuffer;
+      } else if (keep != 0) {
+        System.arraycopy(buffer, keep, buffer, 0, kept);
+      }
+      offset += keep;
+      index -= keep;
+      limit = kept;
+      int read;
+      try {
+        do {
+          read = source.read(buffer, kept, buffer.length - kept);
+        } while (read == 0);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (read != -1) {
+        limit = kept + read;
+      }
+      return keep;
+    }
+
+    /**
+     * Scans the next token.
+     * @return the kind of the token.
+     */
+    Kind next() {
+      var index = this.index;
+      for (;; index++) {
+        if (index == limit) {
+          index -= fill(index);
+          if (index == limit) {
+            throw new IllegalStateException("no token recognized");
+          }
+        }
+        var b = buffer[index];
+        if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+          break;
+        }
+      }
+      this.index = index;
+      var start = index;
+      var b = buffer[index];
+      var kind = switch (b) {
+        case '{' -> LEFT_CURLY;
+        case '}' -> RIGHT_CURLY;
+        case '[' -> LEFT_BRACKET;
+        case ']' -> RIGHT_BRACKET;
+        case ':' -> COLON;
+        case ',' -> COMMA;
+        case 'n' -> NULL;
+        case 't' -> TRUE;
+        case 'f' -> FALSE;
+        case '"' -> STRING;
+        case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '.', '-' -> INTEGER;
+        default -> throw unexpected(start);
+      };
+      return switch (kind) {
+        case NULL -> literal(NULL, "null");
+        case TRUE -> literal(TRUE, "true");
+        case FALSE -> literal(FALSE, "false");
+        case STRING -> string();
+        case INTEGER -> number();
+        default -> {
+          this.index = start + 1;
+          yield token(kind, start, start + 1, false);
+        }
+      };
+    }
+
+    private Kind token(Kind kind, int start, int end, boolean escaped) {
+      this.kind = kind;
+      this.start = start;
+      this.end = end;
+      this.escaped = escaped;
+      return kind;
     }
 
-    private String expect(Kind kind) {
+    /**
+     * Returns the length in bytes of the current token.
+     */
+    int length() {
+      return end - start;
+    }
+
+    void expect(Kind kind) {
       if (this.kind != kind) {
         throw error(kind);
       }
-      return text;
     }
 
-    public IllegalStateException error(Kind... expectedKinds) {
-      return new IllegalStateException("expect " + Arrays.stream(expectedKinds).map(Kind::name).collect(joining(", ")) + " but recognized " + kind + " at " + location);
+    IllegalStateException error(Kind... expectedKinds) {
+      return new IllegalStateException("expect " + Arrays.stream(expectedKinds).map(Kind::name).collect(joining(", ")) + " but recognized " + kind + " at " + (offset + start));
+    }
+
+    private IllegalStateException unexpected(int index) {
+      var b = buffer[index];
+      return new IllegalStateException("unexpected character " + (b >= 0x20 ? "'" + (char) b + "'" : "0x" + Integer.toHexString(b & 0xFF)) + " at " + (offset + index));
+    }
+
+    // the methods below scan a token starting at index, if the buffer is refilled,
+    // the token is moved at the beginning of the buffer so the local indexes are shifted
+
+    private Kind literal(Kind kind, String literal) {
+      var length = literal.length();
+      while (index + length > limit) {
+        var oldLimit = limit - index;
+        fill(index);
+        if (limit - index == oldLimit) {
+          throw new IllegalStateException("unexpected end of input at " + position());
+        }
+      }
+      var start = index;
+      for (var i = 1; i < length; i++) {
+        if (buffer[start + i] != literal.charAt(i)) {
+          throw unexpected(start + i);
+        }
+      }
+      index = start + length;
+      return token(kind, start, index, false);
+    }
+
+    /**
+     * Scans a number, {@code -?[0-9]*(\.[0-9]*)?([eE][+-]?[0-9]+)?} with at least one digit before the exponent.
+     */
+    private Kind number() {
+      var start = this.index;
+      var kind = INTEGER;
+      var digit = false;
+      var exponent = false;
+      var exponentDigit = false;
+      var index = start;
+      for (; ; index++) {
+        if (index == limit) {
+          var shift = fill(start);
+          start -= shift;
+          index -= shift;
+          if (index == limit) {
+            break;
+          }
+        }
+        var b = buffer[index];
+        if (b >= '0' && b <= '9') {
+          if (exponent) {
+            exponentDigit = true;
+          } else {
+            digit = true;
+          }
+          continue;
+        }
+        if (b == '-' && index == start) {
+          continue;
+        }
+        if (b == '.' && kind == INTEGER) {
+          kind = DOUBLE;
+          continue;
+        }
+        if ((b == 'e' || b == 'E') && digit && !exponent) {
+          kind = DOUBLE;
+          exponent = true;
+          continue;
+        }
+        if ((b == '+' || b == '-') && (buffer[index - 1] == 'e' || buffer[index - 1] == 'E')) {
+          continue;
+        }
+        break;
+      }
+      if (!digit || exponent != exponentDigit) {
+        throw new IllegalStateException("invalid number at " + (offset + start));
+      }
+      this.index = index;
+      return token(kind, start, index, false);
     }
-  }
 
-  private record Lexer(Matcher matcher) {
-    private Token next() {
-      for(;;) {
-        if (!matcher.find()) {
-          throw new IllegalStateException("no token recognized");
+    private Kind string() {
+      var start = this.index;
+      var escaped = false;
+      var escape = false;
+      for (var index = start + 1; ; index++) {
+        if (index == limit) {
+          var shift = fill(start);
+          start -= shift;
+          index -= shift;
+          if (index == limit) {
+            throw new IllegalStateException("unterminated string at " + (offset + start));
+          }
+        }
+        var b = buffer[index];
+        if (escape) {  // skip the escaped character
+          escape = false;
+          continue;
         }
-        var index = rangeClosed(1, matcher.groupCount()).filter(i -> matcher.group(i) != null).findFirst().orElseThrow();
-        var kind = Kind.VALUES[index - 1];
-        if (kind != Kind.BLANK) {
-          return new Token(kind, matcher.group(index), matcher.start(index));
+        if (b == '"') {
+          this.index = index + 1;
+          return token(STRING, start + 1, index, escaped);
+        }
+        if (b == '\\') {
+          escaped = escape = true;
         }
       }
     }
+
+    /**
+     * Returns the text of the current token, the strings are decoded from UTF-8 and unescaped.
+     */
+    String text() {
+      if (kind != STRING) {
+        return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+      }
+      if (!escaped) {
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+      }
+      return unescape(start, end);
+    }
+
+    /**
+     * Returns the text of a string token used as a key, the key is first looked up in the table
+     * to avoid to decode and allocate the known keys.
+     */
+    String key(KeyTable keyTable) {
+      if (!escaped) {
+        var key = keyTable.lookup(buffer, start, end);
+        if (key != null) {
+          return key;
+        }
+      }
+      return text();
+    }
+
+    /**
+     * Returns the value of an integer token, without allocating.
+     * @throws IllegalStateException if the value does not fit in a long.
+     */
+    long longValue() {
+      var negative = buffer[this.start] == '-';
+      var start = negative ? this.start + 1 : this.start;
+      var value = 0L;  // accumulated as a negative value to be able to represent Long.MIN_VALUE
+      for (var index = start; index < end; index++) {
+        var digit = buffer[index] - '0';
+        if (value < (Long.MIN_VALUE + digit) / 10) {
+          throw new IllegalStateException("number too big at " + (offset + this.start));
+        }
+        value = value * 10 - digit;
+      }
+      if (!negative) {
+        if (value == Long.MIN_VALUE) {
+          throw new IllegalStateException("number too big at " + (offset + this.start));
+        }
+        return -value;
+      }
+      return value;
+    }
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Clinger's fast path, if the significand is less than 2^53 and the power of ten is at most 10^22,
+     * both are exact doubles, so a single multiplication or division is correctly rounded.
+     * @return the value of the number or NaN if the fast path can not be used.
+     */
+    private double fastDoubleValue() {
+      var buffer = this.buffer;
+      var index = this.start;
+      var end = this.end;
+      var negative = buffer[index] == '-';
+      if (negative) {
+        index++;
+      }
+      var significand = 0L;
+      var digits = 0;
+      var exponent = 0;
+      var fraction = false;
+      for (; index < end; index++) {
+        var b = buffer[index];
+        if (b == '.') {
+          fraction = true;
+          continue;
+        }
+        if (b == 'e' || b == 'E') {
+          break;
+        }
+        var digit = b - '0';
+        if (significand == 0 && digit == 0) {  // leading zeros
+          if (fraction) {
+            exponent--;
+          }
+          continue;
+        }
+        if (++digits > 18) {  // 19 digits may overflow a long, and are above 2^53 anyway
+          return Double.NaN;
+        }
+        significand = significand * 10 + digit;
+        if (fraction) {
+          exponent--;
+        }
+      }
+      if (index < end) {  // exponent
+        index++;
+        var negativeExponent = buffer[index] == '-';
+        if (negativeExponent || buffer[index] == '+') {
+          index++;
+        }
+        var value = 0;
+        for (; index < end && value < 1_000; index++) {
+          value = value * 10 + buffer[index] - '0';
+        }
+        if (index < end) {
+          return Double.NaN;
+        }
+        exponent += negativeExponent ? -value : value;
+      }
+      double result;
+      if (significand == 0) {
+        result = 0.0;
+      } else if (significand < (1L << 53) && exponent >= -22 && exponent <= 22) {
+        result = exponent < 0
+            ? significand / POWERS_OF_TEN[-exponent]
+            : significand * POWERS_OF_TEN[exponent];
+      } else {
+        return Double.NaN;
+      }
+      return negative ? -result : result;
+    }
+
+    /**
+     * Returns the value of a number token as a double, the text of the number is only allocated
+     * if the fast path can not be used.
+     */
+    double doubleValue() {
+      var value = fastDoubleValue();
+      if (Double.isNaN(value)) {
+        return Double.parseDouble(text());
+      }
+      return value;
+    }
+
+    /**
+     * Returns the value of a number token, an Integer or a Long for an integer, a Double for a number
+     * with a fraction or an exponent, and a BigDecimal if the value can not be represented without loss
+     * (an integer that does not fit in a long or a number with more than 19 significant digits).
+     */
+    Object numberValue() {
+      if (kind == INTEGER) {
+        var length = end - start;
+        if (length <= 18) {  // no overflow
+          var value = longValue();
+          if (value == (int) value) {
+            return (int) value;
+          }
+          return value;
+        }
+        var decimal = new BigDecimal(text());
+        if (decimal.unscaledValue().bitLength() < Long.SIZE) {
+          return decimal.longValue();
+        }
+        return decimal;
+      }
+      var value = fastDoubleValue();
+      if (!Double.isNaN(value)) {
+        return value;
+      }
+      var decimal = new BigDecimal(text());
+      if (decimal.precision() > 19) {
+        return decimal;
+      }
+      return decimal.doubleValue();
+    }
+
+    /**
+     * Returns the value of a number token decoded for the type expected by the visitor,
+     * a BigDecimal created from the text of the number for {@link BigDecimal} and {@link BigInteger},
+     * so the value is exact, and the same value as {@link #numberValue()} otherwise.
+     */
+    Object numberValue(Type type) {
+      if (type == BigDecimal.class || type == BigInteger.class) {
+        return new BigDecimal(text());
+      }
+      return numberValue();
+    }
+
+    /**
+     * Copies the characters of a string token in {@code chars} if the string is ASCII and has no escape sequence.
+     * @return the number of characters or -1 if the string can not be copied.
+     */
+    int copyASCII(char[] chars) {
+      if (escaped) {
+        return -1;
+      }
+      var buffer = this.buffer;
+      var start = this.start;
+      var length = this.end - start;
+      for (var i = 0; i < length; i++) {
+        var b = buffer[start + i];
+        if (b < 0) {
+          return -1;
+        }
+        chars[i] = (char) b;
+      }
+      return length;
+    }
+
+    private static int hexDigit(byte b) {
+      return switch (b) {
+        case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' -> b - '0';
+        case 'a', 'b', 'c', 'd', 'e', 'f' -> b - 'a' + 10;
+        case 'A', 'B', 'C', 'D', 'E', 'F' -> b - 'A' + 10;
+        default -> -1;
+      };
+    }
+
+    /**
+     * Slow path, decodes the escape sequences of a string.
+     */
+    private String unescape(int start, int end) {
+      var buffer = this.buffer;
+      var builder = new StringBuilder(end - start);
+      var from = start;
+      for (var index = start; index < end; index++) {
+        if (buffer[index] != '\\') {
+          continue;
+        }
+        builder.append(new String(buffer, from, index - from, StandardCharsets.UTF_8));
+        index++;
+        builder.append(switch (buffer[index]) {
+          case '"' -> '"';
+          case '\\' -> '\\';
+          case '/' -> '/';
+          case 'b' -> '\b';
+          case 'f' -> '\f';
+          case 'n' -> '\n';
+          case 'r' -> '\r';
+          case 't' -> '\t';
+          case 'u' -> {
+            if (index + 4 >= end) {
+              throw new IllegalStateException("invalid unicode escape at " + (offset + index));
+            }
+            var value = 0;
+            for (var i = 0; i < 4; i++) {
+              var digit = hexDigit(buffer[++index]);
+              if (digit == -1) {
+                throw new IllegalStateException("invalid unicode escape at " + (offset + index));
+              }
+              value = value << 4 | digit;
+            }
+            yield (char) value;
+          }
+          default -> throw new IllegalStateException("invalid escape sequence at " + (offset + index));
+        });
+        from = index + 1;
+      }
+      return builder.append(new String(buffer, from, end - from, StandardCharsets.UTF_8)).toString();
+    }
   }
 
   /**
@@ -123,28 +704,152 @@ class ToyJSONParser {
      * @see #startArray(String)
      */
     void endArray(String key);
-  }
 
-  private static final Pattern PATTERN = compile(Arrays.stream(Kind.VALUES).map(k -> k.regex).collect(joining("|")));
+    /**
+     * Called during the parsing after {@link #startObject(String)}, returns the keys expected
+     * in the object, the keys of the text found in the table are passed as the same String instances.
+     *
+     * @return the table of the expected keys.
+     */
+    default KeyTable keyTable() {
+      return KeyTable.EMPTY;
+    }
+
+    /**
+     * Called during the parsing before a number is decoded and passed to {@link #value(String, Object)},
+     * returns the type expected for the number, for {@link BigDecimal} or {@link BigInteger} the number
+     * is decoded from its text without being rounded to a double.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @return the type expected for the number.
+     */
+    default Type numberType(String key) {
+      return Number.class;
+    }
+  }
 
   /**
    * Parse a JSON text and calls the visitor methods when an array, an object or a value is parsed.
+   * The whole text is first copied into a new array of bytes encoded in UTF-8, so the parsing
+   * allocates at least as many bytes as the encoded text, use {@link #parse(byte[], JSONVisitor)}
+   * if the text is already available as UTF-8 bytes.
    *
    * @param input a JSON text
    * @param visitor the visitor to call when parsing the JSON text
+   * @return the number of bytes (in UTF-8) parsed.
    */
-  public static void parse(String input, JSONVisitor visitor) {
-    var lexer = new Lexer(PATTERN.matcher(input));
+  public static long parse(String input, JSONVisitor visitor) {
+    var bytes = input.getBytes(StandardCharsets.UTF_8);
     try {
-      parse(lexer, visitor);
+      return parse(new Lexer(bytes, 0, bytes.length), visitor);
     } catch(IllegalStateException e) {
       throw new IllegalStateException(e.getMessage() + "\n while parsing " + input, e);
     }
   }
 
-  private static void parse(Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    switch(token.kind) {
+  /**
+   * Parse a JSON text encoded in UTF-8 and calls the visitor methods when an array, an object or a value is parsed.
+   *
+   * @param input a JSON text encoded in UTF-8
+   * @param visitor the visitor to call when parsing the JSON text
+   * @return the number of bytes parsed.
+   */
+  public static long parse(byte[] input, JSONVisitor visitor) {
+    Objects.requireNonNull(input);
+    return parse(new Lexer(input, 0, input.length), visitor);
+  }
+
+  /**
+   * Parse the remaining bytes of a buffer as a JSON text encoded in UTF-8 and calls the visitor methods
+   * when an array, an object or a value is parsed. The position of the buffer is not changed.
+   * The bytes of a buffer backed by an array are not copied, the bytes of a direct buffer are copied
+   * chunk by chunk.
+   *
+   * @param input a JSON text encoded in UTF-8
+   * @param visitor the visitor to call when parsing the JSON text
+   * @return the number of bytes parsed.
+   */
+  public static long parse(ByteBuffer input, JSONVisitor visitor) {
+    Objects.requireNonNull(input);
+    if (input.hasArray()) {
+      var offset = input.arrayOffset();
+      return parse(new Lexer(input.array(), offset + input.position(), offset + input.limit()), visitor);
+    }
+    return parse(ByteSource.of(input), visitor);
+  }
+
+  /**
+   * Parse a JSON text encoded in UTF-8 read from an input stream and calls the visitor methods
+   * as soon as an array, an object or a value is parsed.
+   * The bytes are read in a bounded buffer that is refilled when all its bytes are scanned,
+   * so the input is never entirely in memory. The input stream is not closed.
+   *
+   * @param input an input stream of a JSON text encoded in UTF-8
+   * @param visitor the visitor to call when parsing the JSON text
+   * @return the number of bytes parsed.
+   * @throws java.io.UncheckedIOException if an I/O error occurs.
+   */
+  public static long parse(InputStream input, JSONVisitor visitor) {
+    Objects.requireNonNull(input);
+    return parse(ByteSource.of(input), visitor);
+  }
+
+  /**
+   * Parse a JSON text read from a channel, the parser waits for the bytes when its buffer is empty,
+   * so the channel must be in blocking mode, the parsing can not be suspended and resumed later.
+   * @param input a channel of a JSON text encoded in UTF-8, in blocking mode
+   * @param visitor the visitor to call when parsing the JSON text
+   * @return the number of bytes parsed.
+   * @throws IllegalArgumentException if the channel is a non-blocking {@link SelectableChannel}.
+   * @see #parse(InputStream, JSONVisitor)
+   */
+  public static long parse(ReadableByteChannel input, JSONVisitor visitor) {
+    Objects.requireNonNull(input);
+    return parse(ByteSource.of(input), visitor);
+  }
+
+  /**
+   * Parse a JSON text read from a reader, the characters are encoded in UTF-8 chunk by chunk.
+   * @param input a reader of a JSON text
+   * @param visitor the visitor to call when parsing the JSON text
+   * @return the number of bytes (in UTF-8) parsed.
+   * @see #parse(InputStream, JSONVisitor)
+   */
+  public static long parse(Reader input, JSONVisitor visitor) {
+    Objects.requireNonNull(input);
+    return parse(ByteSource.of(input), visitor);
+  }
+
+  /**
+   * Parse a JSON file encoded in UTF-8, the file is read in the bounded buffer of the lexer
+   * like an input stream, so the size of the file is not limited by the size of the heap.
+   * @param path the path of the JSON file
+   * @param visitor the visitor to call when parsing the JSON text
+   * @return the number of bytes parsed.
+   * @throws java.io.UncheckedIOException if an I/O error occurs.
+   */
+  public static long parse(Path path, JSONVisitor visitor) {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(visitor);
+    try (var input = Files.newInputStream(path)) {
+      return parse(ByteSource.of(input), visitor);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  static long parse(ByteSource source, JSONVisitor visitor) {
+    var lexer = new Lexer(source);
+    try {
+      return parse(lexer, visitor);
+    } finally {
+      lexer.release();
+    }
+  }
+
+  private static long parse(Lexer lexer, JSONVisitor visitor) {
+    Objects.requireNonNull(visitor);
+    switch(lexer.next()) {
       case LEFT_CURLY -> {
         visitor.startObject(null);
         parseObject(null, lexer, visitor);
@@ -153,18 +858,18 @@ class ToyJSONParser {
         visitor.startArray(null);
         parseArray(null, lexer, visitor);
       }
-      default -> throw token.error(LEFT_CURLY, LEFT_BRACKET);
+      default -> throw lexer.error(LEFT_CURLY, LEFT_BRACKET);
     }
+    return lexer.position();
   }
 
-  private static void parseValue(String currentKey, Token token, Lexer lexer, JSONVisitor visitor) {
-    switch (token.kind) {
+  private static void parseValue(String currentKey, Kind kind, Lexer lexer, JSONVisitor visitor) {
+    switch (kind) {
       case NULL -> visitor.value(currentKey, null);
       case FALSE -> visitor.value(currentKey, false);
       case TRUE -> visitor.value(currentKey, true);
-      case INTEGER -> visitor.value(currentKey, parseInt(token.text));
-      case DOUBLE -> visitor.value(currentKey, parseDouble(token.text));
-      case STRING -> visitor.value(currentKey, token.text);
+      case INTEGER, DOUBLE -> visitor.value(currentKey, lexer.numberValue(visitor.numberType(currentKey)));
+      case STRING -> visitor.value(currentKey, lexer.text());
       case LEFT_CURLY -> {
         visitor.startObject(currentKey);
         parseObject(currentKey, lexer, visitor);
@@ -173,46 +878,48 @@ class ToyJSONParser {
         visitor.startArray(currentKey);
         parseArray(currentKey, lexer, visitor);
       }
-      default -> throw token.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, RIGHT_CURLY);
+      default -> throw lexer.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, RIGHT_CURLY);
     }
   }
 
   private static void parseObject(String currentKey, Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    if (token.is(RIGHT_CURLY)) {
+    var kind = lexer.next();
+    if (kind == RIGHT_CURLY) {
       visitor.endObject(currentKey);
       return;
     }
+    var keyTable = visitor.keyTable();
     for(;;) {
-      var key = token.expect(STRING);
-      lexer.next().expect(COLON);
-      token = lexer.next();
-      parseValue(key, token, lexer, visitor);
-      token = lexer.next();
-      if (token.is(RIGHT_CURLY)) {
+      lexer.expect(STRING);
+      var key = lexer.key(keyTable);
+      lexer.next();
+      lexer.expect(COLON);
+      parseValue(key, lexer.next(), lexer, visitor);
+      kind = lexer.next();
+      if (kind == RIGHT_CURLY) {
         visitor.endObject(currentKey);
         return;
       }
-      token.expect(COMMA);
-      token = lexer.next();
+      lexer.expect(COMMA);
+      kind = lexer.next();
     }
   }
 
   private static void parseArray(String currentKey, Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    if (token.is(RIGHT_BRACKET)) {
+    var kind = lexer.next();
+    if (kind == RIGHT_BRACKET) {
       visitor.endArray(currentKey);
       return;
     }
     for(;;) {
-      parseValue(null, token, lexer, visitor);
-      token = lexer.next();
-      if (token.is(RIGHT_BRACKET)) {
+      parseValue(null, kind, lexer, visitor);
+      kind = lexer.next();
+      if (kind == RIGHT_BRACKET) {
         visitor.endArray(currentKey);
         return;
       }
-      token.expect(COMMA);
-      token = lexer.next();
+      lexer.expect(COMMA);
+      kind = lexer.next();
     }
   }
-}
\ No newline at end of file
+}
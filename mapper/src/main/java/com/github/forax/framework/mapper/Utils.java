@@ -3,6 +3,8 @@ package com.github.forax.framework.mapper;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationTargetException;
@@ -42,6 +44,34 @@ final class Utils {
     }
   }
 
+  public static MethodHandle unreflect(Method method) {
+    try {
+      return MethodHandles.lookup().unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+    }
+  }
+
+  public static Object invokeGetter(MethodHandle getter, Object instance) {
+    try {
+      return (Object) getter.invokeExact(instance);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
+  public static void invokeWriter(MethodHandle writer, JSONOutput out, Object instance) {
+    try {
+      writer.invokeExact(out, instance);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw rethrow(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")   // very wrong but works
   private static <T extends Throwable> AssertionError rethrow(Throwable cause) throws T {
     throw (T) cause;
@@ -77,6 +107,28 @@ final class Utils {
     }
   }
 
+  public static String codecName(String binaryName) {
+    var index = binaryName.lastIndexOf('.');
+    return binaryName.substring(0, index + 1) + binaryName.substring(index + 1).replace('$', '_') + "_JSONCodec";
+  }
+
+  public static JSONCodec.Codec generatedCodec(Class<?> type) {
+    if (!type.isAnnotationPresent(JSONCodec.class)) {
+      return null;
+    }
+    Class<?> codecClass;
+    try {
+      codecClass = Class.forName(codecName(type.getName()), true, type.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return null;  // the annotation processor was not run
+    }
+    try {
+      return (JSONCodec.Codec) newInstance(codecClass.getConstructor());
+    } catch (NoSuchMethodException e) {
+      throw (NoSuchMethodError) new NoSuchMethodError("no public default constructor " + codecClass.getName()).initCause(e);
+    }
+  }
+
   public static Class<?> erase(Type type) {
     return switch (type) {
       case Class<?> clazz -> clazz;
@@ -4,21 +4,41 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.stream.Stream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -154,7 +174,7 @@ public class JSONReaderTest {
     public void parseJSONClassPrecondition() {
       var reader = new JSONReader();
       assertAll(
-          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(null, String.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((String) null, String.class)),
           () -> assertThrows(NullPointerException.class, () -> reader.parseJSON("", (Class<?>) null))
       );
     }
@@ -264,7 +284,7 @@ public class JSONReaderTest {
     public void parseJSONTypePrecondition() {
       var reader = new JSONReader();
       assertAll(
-          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(null, (Type) String.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((String) null, (Type) String.class)),
           () -> assertThrows(NullPointerException.class, () -> reader.parseJSON("", (Type) null))
       );
     }
@@ -556,4 +576,449 @@ public class JSONReaderTest {
     }
 
   }  // end of Q7
-}
\ No newline at end of file
+
+  @Nested
+  public class Codegen {
+
+    private static JSONReader.TypeMatcher listTypeMatcher() {
+      return type -> Optional.of(type)
+          .flatMap(t -> t instanceof ParameterizedType parameterizedType? Optional.of(parameterizedType): Optional.empty())
+          .filter(t -> t.getRawType() == List.class)
+          .map(t -> JSONReader.ObjectBuilder.list(t.getActualTypeArguments()[0]));
+    }
+
+    @JSONCodec
+    public record Point(int x, long y, double weight, List<String> tags) { }
+
+    @JSONCodec
+    public static class Account {
+      private String owner;
+      private boolean active;
+      private List<Point> points;
+
+      public void setOwner(String owner) {
+        this.owner = owner;
+      }
+      public void setActive(boolean active) {
+        this.active = active;
+      }
+      public void setPoints(List<Point> points) {
+        this.points = points;
+      }
+    }
+
+    @Test
+    public void parseJSONGeneratedRecord() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(listTypeMatcher());
+      var point = reader.parseJSON("""
+        {
+          "x": 1, "y": 2, "weight": 3, "tags": [ "a", "b" ]
+        }
+        """, Point.class);
+      assertEquals(new Point(1, 2L, 3.0, List.of("a", "b")), point);
+    }
+
+    @Test
+    public void parseJSONGeneratedBean() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(listTypeMatcher());
+      var account = reader.parseJSON("""
+        {
+          "owner": "Bob", "active": true, "points": [ { "x": 1, "y": 2, "weight": 0.5, "tags": [] } ]
+        }
+        """, Account.class);
+      assertAll(
+          () -> assertEquals("Bob", account.owner),
+          () -> assertTrue(account.active),
+          () -> assertEquals(List.of(new Point(1, 2L, 0.5, List.of())), account.points)
+      );
+    }
+
+    @Test
+    public void objectBuilderGeneratedTypeProvider() throws NoSuchMethodException {
+      var objectBuilder = Utils.generatedCodec(Account.class).objectBuilder();
+      assertAll(
+          () -> assertEquals(String.class, objectBuilder.typeProvider().apply("owner")),
+          () -> assertEquals(boolean.class, objectBuilder.typeProvider().apply("active")),
+          () -> assertEquals(Account.class.getMethod("setPoints", List.class).getGenericParameterTypes()[0],
+              objectBuilder.typeProvider().apply("points")),
+          () -> assertThrows(IllegalStateException.class, () -> objectBuilder.typeProvider().apply("unknown"))
+      );
+    }
+
+    @Test
+    public void objectBuilderKeyTable() {
+      var accountTable = Utils.generatedCodec(Account.class).objectBuilder().keyTable();
+      var pointTable = Utils.generatedCodec(Point.class).objectBuilder().keyTable();
+      var owner = "owner".getBytes(UTF_8);
+      var weight = "weight".getBytes(UTF_8);
+      assertAll(
+          () -> assertEquals("owner", accountTable.lookup(owner, 0, owner.length)),
+          () -> assertNull(accountTable.lookup(weight, 0, weight.length)),
+          () -> assertEquals("weight", pointTable.lookup(weight, 0, weight.length)),
+          () -> assertSame(KeyTable.EMPTY, JSONReader.ObjectBuilder.list(String.class).keyTable())
+      );
+    }
+  }  // end of Codegen
+
+  @Nested
+  public class Monitoring {
+    @Test
+    public void parseJSONMetrics() {
+      var reader = new JSONReader();
+      var metrics = new JSONMetrics();
+      reader.metrics(metrics);
+      var text = """
+        { "name": "Bob", "age": 23 }
+        """;
+      reader.parseJSON(text, Q1.SimpleBean.class);
+      reader.parseJSON(text, Q1.SimpleBean.class);
+      var counters = metrics.counters(Q1.SimpleBean.class);
+      assertAll(
+          () -> assertEquals(2, counters.count()),
+          () -> assertEquals(2L * text.length(), counters.size()),
+          () -> assertTrue(counters.nanos() > 0),
+          () -> assertEquals(Set.of(Q1.SimpleBean.class), metrics.snapshot().keySet())
+      );
+    }
+
+    @Test
+    public void parseJSONEvents() throws IOException {
+      var reader = new JSONReader();
+      var text = """
+        { "name": "Bob", "age": 23 }
+        """;
+      List<RecordedEvent> events;
+      try (var recording = new Recording()) {
+        recording.enable("com.github.forax.framework.mapper.Deserialization").withThreshold(Duration.ZERO);
+        recording.start();
+        reader.parseJSON(text, Q1.SimpleBean.class);
+        recording.stop();
+        var path = Files.createTempFile("parse", ".jfr");
+        try {
+          recording.dump(path);
+          events = RecordingFile.readAllEvents(path);
+        } finally {
+          Files.delete(path);
+        }
+      }
+      var event = events.stream()
+          .filter(e -> e.getEventType().getName().equals("com.github.forax.framework.mapper.Deserialization"))
+          .findFirst()
+          .orElseThrow();
+      assertAll(
+          () -> assertEquals(Q1.SimpleBean.class.getName(), event.getClass("rootType").getName()),
+          () -> assertEquals(text.length(), event.getLong("size")),
+          () -> assertTrue(event.getLong("allocated") > 0)
+      );
+    }
+
+    @Test
+    public void metricsPreconditions() {
+      var reader = new JSONReader();
+      assertThrows(NullPointerException.class, () -> reader.metrics(null));
+    }
+  }  // end of Monitoring
+
+  @Nested
+  public class BinaryEncoding {
+    private static JSONReader.TypeMatcher listTypeMatcher() {
+      return type -> Optional.of(type)
+          .flatMap(t -> t instanceof ParameterizedType parameterizedType? Optional.of(parameterizedType): Optional.empty())
+          .filter(t -> t.getRawType() == List.class)
+          .map(t -> JSONReader.ObjectBuilder.list(t.getActualTypeArguments()[0]));
+    }
+
+    private static JSONReader.TypeMatcher recordTypeMatcher() {
+      return type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.ObjectBuilder::record);
+    }
+
+    public record Point(int x, long y, double weight, float ratio, short level, byte flags, char unit, boolean valid) { }
+
+    public record Shape(String name, List<Point> points, Point center) { }
+
+    @Test
+    public void parseBinaryRecord() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      reader.addTypeMatcher(recordTypeMatcher());
+      var point = new Point(-1, 1L << 40, 0.5, 1.5f, (short) 3, (byte) -4, 'é', true);
+      assertAll(
+          () -> assertEquals(point, reader.parseBinary(writer.toBinary(point), Point.class)),
+          () -> assertEquals(point, reader.parseBinary(writer.toBinary(point, true), Point.class))
+      );
+    }
+
+    @Test
+    public void parseBinaryNested() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      reader.addTypeMatcher(listTypeMatcher());
+      reader.addTypeMatcher(recordTypeMatcher());
+      var shape = new Shape("Zoë 😀",
+          List.of(new Point(1, 2, 3, 4, (short) 5, (byte) 6, 'a', false), new Point(7, 8, 9, 10, (short) 11, (byte) 12, 'b', true)),
+          null);
+      assertAll(
+          () -> assertEquals(shape, reader.parseBinary(writer.toBinary(shape), Shape.class)),
+          () -> assertEquals(shape, reader.parseBinary(writer.toBinary(shape, true), Shape.class))
+      );
+    }
+
+    @Test
+    public void parseBinaryBean() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      var data = writer.toBinary(Map.of("name", "Bob", "age", 23));
+      var result = reader.parseBinary(data, Q1.SimpleBean.class);
+      assertAll(
+          () -> assertEquals("Bob", result.name),
+          () -> assertEquals(23, result.age)
+      );
+    }
+
+    @Test
+    public void parseBinaryValues() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertNull(reader.parseBinary(writer.toBinary(null), Object.class)),
+          () -> assertEquals("foo", reader.parseBinary(writer.toBinary("foo"), String.class)),
+          () -> assertEquals(42, reader.parseBinary(writer.toBinary(42), Integer.class)),
+          () -> assertEquals(Long.MIN_VALUE, reader.parseBinary(writer.toBinary(Long.MIN_VALUE), Long.class)),
+          () -> assertEquals(-0.0, reader.parseBinary(writer.toBinary(-0.0), Double.class)),
+          () -> assertEquals(true, reader.parseBinary(writer.toBinary(true), Boolean.class)),
+          () -> assertEquals("x".repeat(100_000), reader.parseBinary(writer.toBinary("x".repeat(100_000)), String.class))
+      );
+    }
+
+    @Test
+    public void parseBinaryIsSmallerThanJSON() {
+      var writer = new JSONWriter();
+      var point = new Point(123_456_789, 1L << 40, 0.123456789, 1.5f, (short) 3, (byte) -4, 'é', true);
+      var json = writer.toJSONBytes(point);
+      assertAll(
+          () -> assertTrue(writer.toBinary(point).length < json.length),
+          () -> assertTrue(writer.toBinary(point, true).length < writer.toBinary(point).length)
+      );
+    }
+
+    @Test
+    public void parseBinaryInvalidData() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      var data = writer.toBinary("foo");
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseBinary(new byte[] { 42 }, Object.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseBinary(Arrays.copyOf(data, data.length - 1), String.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseBinary(Arrays.copyOf(data, data.length + 1), String.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseBinary(
+              new byte[] { Binary.STRING, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x10 }, String.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseBinary(
+              new byte[] { Binary.STRING, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00 }, String.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseBinary(null, String.class))
+      );
+    }
+
+    public record Renamed(@JSONProperty("first-name") String firstName, int age) { }
+
+    @Test
+    public void parseBinaryRenamedRecord() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      reader.addTypeMatcher(recordTypeMatcher());
+      var renamed = new Renamed("Ana", 41);
+      assertAll(
+          () -> assertEquals(renamed, reader.parseBinary(writer.toBinary(renamed), Renamed.class)),
+          () -> assertEquals(renamed, reader.parseBinary(writer.toBinary(renamed, true), Renamed.class))
+      );
+    }
+
+    @Test
+    public void parseBinaryPrimitiveArrays() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertArrayEquals(writer.toBinary(List.of(1, -2)), writer.toBinary(new int[] { 1, -2 })),
+          () -> assertArrayEquals(writer.toBinary(List.of(1L, -2L)), writer.toBinary(new long[] { 1, -2 })),
+          () -> assertArrayEquals(writer.toBinary(List.of(.5, -2.0)), writer.toBinary(new double[] { .5, -2 })),
+          () -> assertArrayEquals(writer.toBinary(List.of(.5f)), writer.toBinary(new float[] { .5f })),
+          () -> assertArrayEquals(writer.toBinary(List.of(true, false)), writer.toBinary(new boolean[] { true, false })),
+          () -> assertArrayEquals(writer.toBinary(List.of((short) 3)), writer.toBinary(new short[] { 3 })),
+          () -> assertArrayEquals(writer.toBinary(List.of((byte) -3)), writer.toBinary(new byte[] { -3 }))
+      );
+    }
+  }  // end of BinaryEncoding
+
+  @Nested
+  public class Bytes {
+    @Test
+    public void parseJSONBytes() {
+      var reader = new JSONReader();
+      var bean = reader.parseJSON("""
+        { "name": "Zoë", "age": 23 }
+        """.getBytes(UTF_8), Q1.SimpleBean.class);
+      assertAll(
+          () -> assertEquals("Zoë", bean.name),
+          () -> assertEquals(23, bean.age)
+      );
+    }
+
+    @Test
+    public void parseJSONByteBuffer() {
+      var reader = new JSONReader();
+      var bytes = """
+        { "name": "Zoë", "age": 23 }
+        """.getBytes(UTF_8);
+      var buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+      var bean = reader.parseJSON(buffer, Q1.SimpleBean.class);
+      assertAll(
+          () -> assertEquals("Zoë", bean.name),
+          () -> assertEquals(23, bean.age),
+          () -> assertEquals(bytes.length, buffer.remaining())
+      );
+    }
+
+    @Test
+    public void parseJSONStreams() throws IOException {
+      var reader = new JSONReader();
+      var text = """
+        { "name": "Zoë", "age": 23 }
+        """;
+      var path = Files.createTempFile("bean", ".json");
+      try {
+        Files.writeString(path, text);
+        Q1.SimpleBean fromStream;
+        try (var input = Files.newInputStream(path)) {
+          fromStream = reader.parseJSON(input, Q1.SimpleBean.class);
+        }
+        Q1.SimpleBean fromChannel;
+        try (var channel = Files.newByteChannel(path)) {
+          fromChannel = reader.parseJSON(channel, Q1.SimpleBean.class);
+        }
+        var fromReader = reader.parseJSON(new StringReader(text), Q1.SimpleBean.class);
+        var fromPath = reader.parseJSON(path, Q1.SimpleBean.class);
+        assertAll(
+            () -> assertEquals("Zoë", fromPath.name),
+            () -> assertEquals(23, fromPath.age),
+            () -> assertEquals("Zoë", fromStream.name),
+            () -> assertEquals(23, fromStream.age),
+            () -> assertEquals("Zoë", fromChannel.name),
+            () -> assertEquals("Zoë", fromReader.name),
+            () -> assertEquals(23, fromReader.age)
+        );
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void parseJSONBytesPreconditions() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((byte[]) null, Object.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((ByteBuffer) null, Object.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((InputStream) null, Object.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((Reader) null, Object.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((Path) null, Object.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(new byte[0], (Type) null))
+      );
+    }
+  }  // end of Bytes
+
+  @Nested
+  public class Numbers {
+    public record Primitives(int i, long l, short s, byte b, double d, float f) {}
+    public record Boxed(Integer i, Long l, Double d, BigDecimal decimal, BigInteger integer) {}
+
+    private static JSONReader reader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type))
+          .filter(Class::isRecord)
+          .map(JSONReader.ObjectBuilder::record));
+      return reader;
+    }
+
+    @Test
+    public void parseJSONPrimitives() {
+      var reader = reader();
+      var primitives = reader.parseJSON("""
+        { "i": -12, "l": 3, "s": 300, "b": -7, "d": 5, "f": 1.5e2 }
+        """, Primitives.class);
+      assertEquals(new Primitives(-12, 3L, (short) 300, (byte) -7, 5.0, 150f), primitives);
+    }
+
+    @Test
+    public void parseJSONBoxed() {
+      var reader = reader();
+      var boxed = reader.parseJSON("""
+        { "i": 2147483647, "l": 9223372036854775807, "d": -1, "decimal": 0.1, "integer": 123456789012345678901234567890 }
+        """, Boxed.class);
+      assertEquals(new Boxed(Integer.MAX_VALUE, Long.MAX_VALUE, -1.0, new BigDecimal("0.1"), new BigInteger("123456789012345678901234567890")), boxed);
+    }
+
+    @Test
+    public void parseJSONExactBigDecimal() {
+      var reader = reader();
+      var boxed = reader.parseJSON("""
+        { "decimal": 3.14159265358979323846264338327950288, "d": 3.14159265358979323846264338327950288 }
+        """, Boxed.class);
+      assertAll(
+          () -> assertEquals(new BigDecimal("3.14159265358979323846264338327950288"), boxed.decimal),
+          () -> assertEquals(Math.PI, boxed.d)
+      );
+    }
+
+    public static class Payment {
+      private BigDecimal amount;
+      private BigInteger count;
+
+      public BigDecimal getAmount() {
+        return amount;
+      }
+      public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+      }
+      public BigInteger getCount() {
+        return count;
+      }
+      public void setCount(BigInteger count) {
+        this.count = count;
+      }
+    }
+
+    @Test
+    public void parseJSONBigDecimalKeepsThePrecision() {
+      var reader = new JSONReader();
+      assertAll(Stream.of("1.10", "8.000000000000001", "123456.789012345678", "0.1234567890123456789", "-2.50e3", "7")
+          .map(literal -> () -> {
+            var payment = reader.parseJSON("{ \"amount\": " + literal + " }", Payment.class);
+            assertEquals(new BigDecimal(literal), payment.getAmount());
+          }));
+    }
+
+    @Test
+    public void parseJSONBigInteger() {
+      var reader = new JSONReader();
+      var payment = reader.parseJSON("""
+        { "count": 1234567890123456789 }
+        """, Payment.class);
+      assertEquals(new BigInteger("1234567890123456789"), payment.getCount());
+    }
+
+    @Test
+    public void parseJSONNumberTooBig() {
+      var reader = reader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+            { "i": 2147483648, "l": 0, "s": 0, "b": 0, "d": 0, "f": 0 }
+            """, Primitives.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+            { "i": 0, "l": 1.5, "s": 0, "b": 0, "d": 0, "f": 0 }
+            """, Primitives.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("""
+            { "i": 0, "l": 0, "s": 0, "b": 128, "d": 0, "f": 0 }
+            """, Primitives.class))
+      );
+    }
+  }  // end of Numbers
+}
@@ -4,10 +4,44 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -133,7 +167,6 @@ public class JSONWriterTest {
     }
   }
 
-/*
   @Nested
   public class Q5 {
     @Test @Tag("Q5")
@@ -166,12 +199,45 @@ public class JSONWriterTest {
       var writer = new JSONWriter();
       assertAll(
           () -> assertThrows(NullPointerException.class, () -> writer.configure(null, String::toString)),
-          () -> assertThrows(NullPointerException.class, () -> writer.configure(Timestamp.class, null))
+          () -> assertThrows(NullPointerException.class, () -> writer.configure(Timestamp.class, (Function<Object, String>) null)),
+          () -> assertThrows(NullPointerException.class, () -> writer.configure(Timestamp.class, (JSONWriter.Generator) null))
       );
     }
 
+    @Test @Tag("Q5")
+    public void toJSONWithConfigureGenerator() {
+      var writer = new JSONWriter();
+      writer.configure(Car.class, (JSONWriter w, Object car, JSONOutput out) -> {
+        out.append("\"car of ");
+        out.append(((Car) car).getOwner());
+        out.append('"');
+      });
+      assertEquals("""
+          ["car of Bob", "car of Ana"]\
+          """, writer.toJSON(List.of(new Car("Bob"), new Car("Ana"))));
+    }
+
+    @Test @Tag("Q5")
+    public void configureIsPerWriter() {
+      var writer = new JSONWriter();
+      writer.configure(Car.class, car -> "42");
+      var writer2 = new JSONWriter();
+      assertAll(
+          () -> assertEquals("42", writer.toJSON(new Car("Bob"))),
+          () -> assertEquals("{\"owner\": \"Bob\"}", writer2.toJSON(new Car("Bob")))
+      );
+    }
+
+    @Test @Tag("Q5")
+    public void configureAfterFirstUse() {
+      var writer = new JSONWriter();
+      assertEquals("{\"owner\": \"Bob\"}", writer.toJSON(new Car("Bob")));
+      writer.configure(Car.class, car -> "42");
+      assertEquals("42", writer.toJSON(new Car("Bob")));
+    }
+
   } // end of Q5
-*/
+
   @Nested
   public class Q6 {
     @Test @Tag("Q6")
@@ -196,7 +262,734 @@ public class JSONWriterTest {
     }
   }
 
-  /*
+  @Nested
+  public class Streaming {
+    @Test
+    public void toJSONAppendable() {
+      var writer = new JSONWriter();
+      var builder = new StringBuilder("json: ");
+      writer.toJSON(new Person("Bob", "Hunky"), builder);
+      assertEquals("""
+          json: {"first-name": "Bob", "last-name": "Hunky"}\
+          """, builder.toString());
+    }
+
+    @Test
+    public void toJSONWriter() {
+      var writer = new JSONWriter();
+      var stringWriter = new StringWriter();
+      writer.toJSON(new Car("Marty"), stringWriter);
+      assertEquals("""
+          {"owner": "Marty"}\
+          """, stringWriter.toString());
+    }
+
+    @Test
+    public void toJSONLargerThanTheBuffer() {
+      var writer = new JSONWriter();
+      var text = "x".repeat(100_000);
+      var stringWriter = new StringWriter();
+      writer.toJSON(new Car(text), stringWriter);
+      assertEquals("{\"owner\": \"" + text + "\"}", stringWriter.toString());
+    }
+
+    @Test
+    public void toJSONPreconditions() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> writer.toJSON("foo", (Appendable) null)),
+          () -> assertThrows(NullPointerException.class, () -> writer.toJSON("foo", (JSONOutput) null))
+      );
+    }
+
+    @Test
+    public void toJSONBytes() {
+      var writer = new JSONWriter();
+      var bytes = writer.toJSONBytes(new Person("Zoë", "😀 €"));
+      assertEquals("""
+          {"first-name": "Zoë", "last-name": "😀 €"}\
+          """, new String(bytes, UTF_8));
+    }
+
+    @Test
+    public void toJSONOutputStream() {
+      var writer = new JSONWriter();
+      var text = "é".repeat(100_000);
+      var outputStream = new ByteArrayOutputStream();
+      writer.toJSON(new Car(text), outputStream);
+      assertEquals("{\"owner\": \"" + text + "\"}", outputStream.toString(UTF_8));
+    }
+
+    @Test
+    public void toJSONChannel() {
+      var writer = new JSONWriter();
+      var outputStream = new ByteArrayOutputStream();
+      writer.toJSON(new Car("Marty"), Channels.newChannel(outputStream));
+      assertEquals("""
+          {"owner": "Marty"}\
+          """, outputStream.toString(UTF_8));
+    }
+
+    @Test
+    public void toJSONByteBuffer() {
+      var writer = new JSONWriter();
+      var byteBuffer = ByteBuffer.allocate(64);
+      writer.toJSON(new Car("Marty"), byteBuffer);
+      assertEquals("""
+          {"owner": "Marty"}\
+          """, new String(byteBuffer.array(), 0, byteBuffer.position(), UTF_8));
+    }
+  }  // end of Streaming
+
+
+  @Nested
+  public class Lines {
+    @Test
+    public void writeLines() {
+      var writer = new JSONWriter();
+      var stringWriter = new StringWriter();
+      writer.writeLines(Stream.of(new Car("Bob"), "line\nbreak", 42), stringWriter);
+      assertEquals("""
+          {"owner": "Bob"}
+          "line\\nbreak"
+          42
+          """, stringWriter.toString());
+    }
+
+    @Test
+    public void writeLinesEmpty() {
+      var writer = new JSONWriter();
+      var stringWriter = new StringWriter();
+      writer.writeLines(Stream.empty(), stringWriter);
+      assertEquals("", stringWriter.toString());
+    }
+
+    @Test
+    public void writeLinesFlushBatches() {
+      class CountingWriter extends StringWriter {
+        int flushes;
+
+        @Override
+        public void flush() {
+          flushes++;
+        }
+      }
+      var writer = new JSONWriter();
+      var countingWriter = new CountingWriter();
+      writer.writeLines(IntStream.range(0, 10).boxed(), countingWriter, 3);
+      assertAll(
+          () -> assertEquals(4, countingWriter.flushes),
+          () -> assertEquals(10, countingWriter.toString().lines().count())
+      );
+    }
+
+    @Test
+    public void writeLinesChannel() {
+      var writer = new JSONWriter();
+      var outputStream = new ByteArrayOutputStream();
+      writer.writeLines(IntStream.range(0, 100_000).mapToObj(i -> new Car("owner" + i)), Channels.newChannel(outputStream), 10_000);
+      var lines = outputStream.toString(UTF_8).lines().toList();
+      assertAll(
+          () -> assertEquals(100_000, lines.size()),
+          () -> assertEquals("{\"owner\": \"owner0\"}", lines.get(0)),
+          () -> assertEquals("{\"owner\": \"owner99999\"}", lines.get(99_999))
+      );
+    }
+
+    @Test
+    public void writeLinesPreconditions() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> writer.writeLines(null, new StringWriter())),
+          () -> assertThrows(NullPointerException.class, () -> writer.writeLines(Stream.of(1), (StringWriter) null)),
+          () -> assertThrows(IllegalArgumentException.class, () -> writer.writeLines(Stream.of(1), new StringWriter(), 0)),
+          () -> assertThrows(NullPointerException.class, () -> writer.writeLines(null, Channels.newChannel(new ByteArrayOutputStream()), 1)),
+          () -> assertThrows(IllegalArgumentException.class, () -> writer.writeLines(Stream.of(1), Channels.newChannel(new ByteArrayOutputStream()), -1))
+      );
+    }
+  }  // end of Lines
+
+  @Nested
+  public class Primitives {
+    @Test
+    public void toJSONBoxedPrimitives() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("-9223372036854775808", writer.toJSON(Long.MIN_VALUE)),
+          () -> assertEquals("2147483647", writer.toJSON(Integer.MAX_VALUE)),
+          () -> assertEquals("0", writer.toJSON(0)),
+          () -> assertEquals("-12", writer.toJSON((short) -12)),
+          () -> assertEquals("7", writer.toJSON((byte) 7)),
+          () -> assertEquals("1.5", writer.toJSON(1.5f)),
+          () -> assertEquals("\"x\"", writer.toJSON('x'))
+      );
+    }
+
+    @Test
+    public void toJSONPrimitiveArrays() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("[1, -2, 3]", writer.toJSON(new int[] { 1, -2, 3 })),
+          () -> assertEquals("[10000000000]", writer.toJSON(new long[] { 10_000_000_000L })),
+          () -> assertEquals("[1.0, 2.5]", writer.toJSON(new double[] { 1.0, 2.5 })),
+          () -> assertEquals("[true, false]", writer.toJSON(new boolean[] { true, false })),
+          () -> assertEquals("[]", writer.toJSON(new int[0]))
+      );
+    }
+
+    @Test
+    public void toJSONRecordWithPrimitives() {
+      record Telemetry(int count, long timestamp, double ratio, boolean valid, char unit, short level, int[] samples) { }
+      var writer = new JSONWriter();
+      var telemetry = new Telemetry(3, 1_700_000_000_000L, 0.25, true, 'k', (short) -1, new int[] { 4, 5 });
+      var json = writer.toJSON(telemetry);
+      assertEquals("""
+          {"count": 3, "timestamp": 1700000000000, "ratio": 0.25, "valid": true, "unit": "k", "level": -1, "samples": [4, 5]}\
+          """,
+          json);
+    }
+
+    @Test
+    public void toJSONBytesWithPrimitives() {
+      record Point(int x, long y) { }
+      var writer = new JSONWriter();
+      var bytes = writer.toJSONBytes(new Point(-42, Long.MAX_VALUE));
+      assertEquals("""
+          {"x": -42, "y": 9223372036854775807}\
+          """, new String(bytes, UTF_8));
+    }
+  }  // end of Primitives
+
+  @Nested
+  public class Parallel {
+    @Test
+    public void toJSONParallelList() {
+      var list = IntStream.range(0, 100_000).mapToObj(i -> new Car("owner" + i)).toList();
+      var writer = new JSONWriter();
+      var expected = writer.toJSON(list);
+      var pool = new ForkJoinPool(4);
+      try {
+        writer.parallel(pool, 1_000);
+        var outputStream = new ByteArrayOutputStream();
+        writer.toJSON(list, outputStream);
+        assertAll(
+            () -> assertEquals(expected, writer.toJSON(list)),
+            () -> assertEquals(expected, outputStream.toString(UTF_8))
+        );
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    @Test
+    public void toJSONParallelNestedLists() {
+      record Batch(List<Integer> values) { }
+      var batches = IntStream.range(0, 2_000)
+          .mapToObj(i -> new Batch(IntStream.range(0, 500).boxed().toList()))
+          .toList();
+      var writer = new JSONWriter();
+      var expected = writer.toJSON(batches);
+      var pool = new ForkJoinPool(4);
+      try {
+        writer.parallel(pool, 300);
+        assertEquals(expected, writer.toJSON(batches));
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    @Test
+    public void toJSONParallelPropagatesExceptions() {
+      record Failing(String name) {
+        @Override
+        public String name() {
+          throw new IllegalStateException("oops");
+        }
+      }
+      var writer = new JSONWriter();
+      var pool = new ForkJoinPool(2);
+      try {
+        writer.parallel(pool, 10);
+        var list = Collections.nCopies(1_000, new Failing("foo"));
+        assertThrows(IllegalStateException.class, () -> writer.toJSON(list));
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    @Test
+    public void parallelPreconditions() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> writer.parallel(null, 10)),
+          () -> assertThrows(IllegalArgumentException.class, () -> writer.parallel(ForkJoinPool.commonPool(), 0))
+      );
+    }
+  }  // end of Parallel
+
+
+  @Nested
+  public class Pooling {
+    @Test
+    public void acquireReleaseReuse() {
+      var pool = new BufferPool<>(char[]::new, buffer -> buffer.length);
+      var buffer = pool.acquire(100);
+      assertEquals(BufferPool.MIN_CAPACITY, buffer.length);
+      pool.release(buffer);
+      assertSame(buffer, pool.acquire(BufferPool.MIN_CAPACITY));
+    }
+
+    @Test
+    public void acquireSizeClasses() {
+      var pool = new BufferPool<>(byte[]::new, buffer -> buffer.length);
+      assertAll(
+          () -> assertEquals(BufferPool.MIN_CAPACITY * 2, pool.acquire(BufferPool.MIN_CAPACITY + 1).length),
+          () -> assertEquals(BufferPool.MAX_CAPACITY, pool.acquire(BufferPool.MAX_CAPACITY).length),
+          () -> assertEquals(BufferPool.MAX_CAPACITY + 1, pool.acquire(BufferPool.MAX_CAPACITY + 1).length)
+      );
+    }
+
+    @Test
+    public void releaseOversizedBufferIsDropped() {
+      var pool = new BufferPool<>(byte[]::new, buffer -> buffer.length);
+      var buffer = new byte[BufferPool.MAX_CAPACITY * 2];
+      pool.release(buffer);
+      assertNotSame(buffer, pool.acquire(BufferPool.MAX_CAPACITY * 2));
+    }
+
+    @Test
+    public void releaseGrownBufferServesSmallerClass() {
+      var pool = new BufferPool<>(char[]::new, buffer -> buffer.length);
+      var buffer = new char[BufferPool.MIN_CAPACITY * 3];
+      pool.release(buffer);
+      assertSame(buffer, pool.acquire(BufferPool.MIN_CAPACITY * 2));
+    }
+
+    @Test
+    public void toJSONWithVirtualThreads() throws InterruptedException {
+      var writer = new JSONWriter();
+      var list = IntStream.range(0, 1_000).mapToObj(i -> new Car("owner" + i)).toList();
+      var expected = writer.toJSON(list);
+      var errors = new AtomicInteger();
+      try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+        for (var i = 0; i < 1_000; i++) {
+          executor.execute(() -> {
+            if (!expected.equals(writer.toJSON(list)) || !expected.equals(new String(writer.toJSONBytes(list), UTF_8))) {
+              errors.incrementAndGet();
+            }
+          });
+        }
+      }
+      assertEquals(0, errors.get());
+    }
+  }  // end of Pooling
+
+  @Nested
+  public class SizePrediction {
+    @Test
+    public void expectedSizeFollowsTheSerializedSize() {
+      record Page(List<String> lines) { }
+      var writer = new JSONWriter();
+      var page = new Page(Collections.nCopies(2_000, "a line of text"));
+      assertEquals(0, JSONWriter.expectedSize(Page.class));
+      var size = writer.toJSON(page).length();
+      assertAll(
+          () -> assertTrue(JSONWriter.expectedSize(Page.class) >= size),
+          () -> assertTrue(JSONWriter.expectedSize(Page.class) <= size * 2)
+      );
+    }
+
+    @Test
+    public void expectedSizeIsAMovingAverage() {
+      record Text(String value) { }
+      var writer = new JSONWriter();
+      writer.toJSONBytes(new Text("x".repeat(100_000)));
+      var first = JSONWriter.expectedSize(Text.class);
+      for (var i = 0; i < 100; i++) {
+        writer.toJSONBytes(new Text("x"));
+      }
+      assertTrue(JSONWriter.expectedSize(Text.class) < first / 100);
+    }
+
+    @Test
+    public void outputIsPresized() {
+      record Page(List<String> lines) { }
+      var writer = new JSONWriter();
+      var page = new Page(Collections.nCopies(5_000, "a line of text"));
+      var expected = writer.toJSON(page);
+      var out = new JSONOutput.CharOutput(null, JSONWriter.expectedSize(Page.class));
+      try {
+        var capacity = out.capacity();
+        writer.toJSON(page, out);
+        assertAll(
+            () -> assertEquals(expected, out.toString()),
+            () -> assertEquals(capacity, out.capacity())
+        );
+      } finally {
+        out.release();
+      }
+    }
+  }  // end of SizePrediction
+
+  @Nested
+  public class Monitoring {
+    @Test
+    public void toJSONMetrics() {
+      var writer = new JSONWriter();
+      var metrics = new JSONMetrics();
+      writer.metrics(metrics);
+      var json = writer.toJSON(new Car("Bob"));
+      var bytes = writer.toJSONBytes(new Car("Zoë"));
+      writer.toJSON(null);
+      writer.toJSON(List.of(new Car("Ana")));  // only the root type is counted
+      var counters = metrics.counters(Car.class);
+      assertAll(
+          () -> assertEquals(2, counters.count()),
+          () -> assertEquals(json.length() + bytes.length, counters.size()),
+          () -> assertTrue(counters.nanos() > 0),
+          () -> assertEquals(1, metrics.counters(Void.class).count()),
+          () -> assertEquals(3, metrics.snapshot().size()),
+          () -> assertEquals(JSONMetrics.Counters.EMPTY, metrics.counters(String.class))
+      );
+      metrics.reset();
+      assertEquals(Map.of(), metrics.snapshot());
+    }
+
+    @Test
+    public void writeLinesMetrics() {
+      var writer = new JSONWriter();
+      var metrics = new JSONMetrics();
+      writer.metrics(metrics);
+      var stringWriter = new StringWriter();
+      writer.writeLines(IntStream.range(0, 20_000).mapToObj(i -> new Car("owner" + i)), stringWriter);
+      var counters = metrics.counters(Car.class);
+      assertAll(
+          () -> assertEquals(20_000, counters.count()),
+          () -> assertEquals(stringWriter.toString().length() - 20_000, counters.size())  // without the newlines
+      );
+    }
+
+    @Test
+    public void toJSONEvents() throws IOException {
+      var writer = new JSONWriter();
+      String json;
+      List<RecordedEvent> events;
+      try (var recording = new Recording()) {
+        recording.enable("com.github.forax.framework.mapper.Serialization").withThreshold(Duration.ZERO);
+        recording.start();
+        json = writer.toJSON(new Car("Bob"));
+        recording.stop();
+        var path = Files.createTempFile("toJSON", ".jfr");
+        try {
+          recording.dump(path);
+          events = RecordingFile.readAllEvents(path);
+        } finally {
+          Files.delete(path);
+        }
+      }
+      var event = events.stream()
+          .filter(e -> e.getEventType().getName().equals("com.github.forax.framework.mapper.Serialization"))
+          .findFirst()
+          .orElseThrow();
+      assertAll(
+          () -> assertEquals(Car.class.getName(), event.getClass("rootType").getName()),
+          () -> assertEquals(json.length(), event.getLong("size")),
+          () -> assertTrue(event.getLong("allocated") >= 0)
+      );
+    }
+
+    @Test
+    public void toJSONEventsOnAVirtualThread() throws IOException, InterruptedException {
+      var writer = new JSONWriter();
+      List<RecordedEvent> events;
+      try (var recording = new Recording()) {
+        recording.enable("com.github.forax.framework.mapper.Serialization").withThreshold(Duration.ZERO);
+        recording.start();
+        Thread.ofVirtual().start(() -> writer.toJSON(new Car("Bob"))).join();
+        recording.stop();
+        var path = Files.createTempFile("toJSON", ".jfr");
+        try {
+          recording.dump(path);
+          events = RecordingFile.readAllEvents(path);
+        } finally {
+          Files.delete(path);
+        }
+      }
+      var event = events.stream()
+          .filter(e -> e.getEventType().getName().equals("com.github.forax.framework.mapper.Serialization"))
+          .findFirst()
+          .orElseThrow();
+      // the JDK does not track the allocations of a virtual thread
+      assertEquals(JSONEvents.UNKNOWN, event.getLong("allocated"));
+    }
+
+    @Test
+    public void metricsPreconditions() {
+      var writer = new JSONWriter();
+      assertThrows(NullPointerException.class, () -> writer.metrics(null));
+    }
+  }  // end of Monitoring
+
+  @Nested
+  public class Escaping {
+    @Test
+    public void toJSONEscapedString() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("\"a\\\"b\"", writer.toJSON("a\"b")),
+          () -> assertEquals("\"a\\\\b\"", writer.toJSON("a\\b")),
+          () -> assertEquals("\"\\n\\r\\t\\b\\f\"", writer.toJSON("\n\r\t\b\f")),
+          () -> assertEquals("\"\\u0000\\u001f\"", writer.toJSON("\u0000\u001f")),
+          () -> assertEquals("\"\\\"\"", writer.toJSON('"')),
+          () -> assertEquals("\"é\\n€\"", writer.toJSON("é\n€"))
+      );
+    }
+
+    @Test
+    public void toJSONBytesEscapedString() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("\"0123456789abcdef\"", new String(writer.toJSONBytes("0123456789abcdef"), UTF_8)),
+          () -> assertEquals("\"0123456789\\\"bcdef\"", new String(writer.toJSONBytes("0123456789\"bcdef"), UTF_8)),
+          () -> assertEquals("\"01234567\\\\\"", new String(writer.toJSONBytes("01234567\\"), UTF_8)),
+          () -> assertEquals("\"éèà€ \\t\"", new String(writer.toJSONBytes("éèà€ \t"), UTF_8)),
+          () -> assertEquals("\"😀😀😀\\n\"", new String(writer.toJSONBytes("😀😀😀\n"), UTF_8))
+      );
+    }
+
+    @Test
+    public void toJSONEscapedKeys() {
+      record Quote(@JSONProperty("a \"quote\"") String text) { }
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("{\"a \\\"quote\\\"\": \"x\\ty\"}", writer.toJSON(new Quote("x\ty"))),
+          () -> assertEquals("{\"a \\\"quote\\\"\": \"x\\ty\"}", new String(writer.toJSONBytes(new Quote("x\ty")), UTF_8)),
+          () -> assertEquals("{\"a\\nb\": 1}", writer.toJSON(Map.of("a\nb", 1)))
+      );
+    }
+
+    @Test
+    public void toJSONLongStringWithEscapes() {
+      var writer = new JSONWriter();
+      var text = "abc\"def\\".repeat(10_000);
+      var expected = "\"" + "abc\\\"def\\\\".repeat(10_000) + "\"";
+      var stringWriter = new StringWriter();
+      writer.toJSON(text, stringWriter);
+      var outputStream = new ByteArrayOutputStream();
+      writer.toJSON(text, outputStream);
+      assertAll(
+          () -> assertEquals(expected, writer.toJSON(text)),
+          () -> assertEquals(expected, stringWriter.toString()),
+          () -> assertEquals(expected, outputStream.toString(UTF_8))
+      );
+    }
+  }  // end of Escaping
+
+  @Nested
+  public class CollectionsAndMaps {
+    @Test
+    public void toJSONList() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("[]", writer.toJSON(List.of())),
+          () -> assertEquals("[1, \"foo\", null]", writer.toJSON(Arrays.asList(1, "foo", null))),
+          () -> assertEquals("[1, 2, 3]", writer.toJSON(new LinkedList<>(List.of(1, 2, 3))))
+      );
+    }
+
+    @Test
+    public void toJSONIterableAndArray() {
+      var writer = new JSONWriter();
+      Iterable<String> iterable = () -> List.of("a", "b").iterator();
+      assertAll(
+          () -> assertEquals("[\"a\", \"b\"]", writer.toJSON(iterable)),
+          () -> assertEquals("[\"a\", [1, 2]]", writer.toJSON(new Object[] { "a", new int[] { 1, 2 } })),
+          () -> assertEquals("[1]", writer.toJSON(new TreeSet<>(Set.of(1))))
+      );
+    }
+
+    @Test
+    public void toJSONMap() {
+      var writer = new JSONWriter();
+      var map = new LinkedHashMap<Object, Object>();
+      map.put("name", "Bob");
+      map.put(42, List.of(true));
+      assertAll(
+          () -> assertEquals("{}", writer.toJSON(Map.of())),
+          () -> assertEquals("""
+              {"name": "Bob", "42": [true]}\
+              """, writer.toJSON(map))
+      );
+    }
+
+    @Test
+    public void toJSONRecordWithAList() {
+      record Garage(List<Car> cars) { }
+      var writer = new JSONWriter();
+      var garage = new Garage(List.of(new Car("Marty"), new Car("Doc")));
+      assertEquals("""
+          {"cars": [{"owner": "Marty"}, {"owner": "Doc"}]}\
+          """, writer.toJSON(garage));
+    }
+  }  // end of CollectionsAndMaps
+
+  @Nested
+  public class HotTypes {
+    public record Sample(String name, int count, long timestamp, double ratio, float weight, boolean valid,
+                         char unit, short level, byte flags, List<Integer> values, Car car) { }
+
+    @Test
+    public void toJSONGeneratedSerializer() {
+      var writer = new JSONWriter();
+      var sample = new Sample("foo", 3, -4L, 0.5, 1.5f, true, 'u', (short) 6, (byte) 7, List.of(8, 9), new Car("Marty"));
+      var expected = """
+          {"name": "foo", "count": 3, "timestamp": -4, "ratio": 0.5, "weight": 1.5, "valid": true, \
+          "unit": "u", "level": 6, "flags": 7, "values": [8, 9], "car": {"owner": "Marty"}}\
+          """;
+      for (var i = 0; i < 2 * JSONWriter.ClassData.HOT_THRESHOLD; i++) {
+        assertEquals(expected, writer.toJSON(sample));
+      }
+    }
+
+    @Test
+    public void toJSONGeneratedSerializerPropagatesExceptions() {
+      record Failing(String name) {
+        @Override
+        public String name() {
+          throw new IllegalStateException("oops");
+        }
+      }
+      var writer = new JSONWriter();
+      for (var i = 0; i < 2 * JSONWriter.ClassData.HOT_THRESHOLD; i++) {
+        assertThrows(IllegalStateException.class, () -> writer.toJSON(new Failing("foo")));
+      }
+    }
+
+    @Test
+    public void toJSONGeneratedSerializerEmpty() {
+      record Empty() { }
+      var writer = new JSONWriter();
+      for (var i = 0; i < 2 * JSONWriter.ClassData.HOT_THRESHOLD; i++) {
+        assertEquals("{}", writer.toJSON(new Empty()));
+      }
+    }
+  }  // end of HotTypes
+
+  @Nested
+  public class OmitDefaults {
+    @Test
+    public void toJSONOmitDefaults() {
+      var writer = new JSONWriter();
+      writer.omitDefaults(true);
+      var sparse = new HotTypes.Sample(null, 0, 0L, 0.0, 0f, false, '\0', (short) 0, (byte) 0, List.of(), null);
+      var dense = new HotTypes.Sample("foo", 3, -4L, 0.5, 1.5f, true, 'u', (short) 6, (byte) 7, List.of(8, 9), new Car("Marty"));
+      var mixed = new HotTypes.Sample(null, 0, 12L, -0.0, 0f, true, '\0', (short) 0, (byte) 0, null, new Car(null));
+      var expectedDense = """
+          {"name": "foo", "count": 3, "timestamp": -4, "ratio": 0.5, "weight": 1.5, "valid": true, \
+          "unit": "u", "level": 6, "flags": 7, "values": [8, 9], "car": {"owner": "Marty"}}\
+          """;
+      for (var i = 0; i < 2 * JSONWriter.ClassData.HOT_THRESHOLD; i++) {
+        assertEquals("{}", writer.toJSON(sparse));
+        assertEquals(expectedDense, writer.toJSON(dense));
+        assertEquals("""
+            {"timestamp": 12, "ratio": -0.0, "valid": true, "car": {}}\
+            """, writer.toJSON(mixed));
+      }
+    }
+
+    @Test
+    public void toJSONOmitDefaultsBean() {
+      var writer = new JSONWriter();
+      writer.omitDefaults(true);
+      for (var i = 0; i < 2 * JSONWriter.ClassData.HOT_THRESHOLD; i++) {
+        assertAll(
+            () -> assertEquals("""
+                {"last-name": "Hunky"}\
+                """, writer.toJSON(new Person(null, "Hunky"))),
+            () -> assertEquals("{}", writer.toJSON(new Person(null, null)))
+        );
+      }
+    }
+
+    @Test
+    public void toJSONOmitDefaultsEmptyArraysAndMaps() {
+      record Holder(int[] ints, String[] strings, Map<String, Integer> map, Integer boxed) { }
+      var writer = new JSONWriter();
+      writer.omitDefaults(true);
+      assertAll(
+          () -> assertEquals("""
+              {"boxed": 0}\
+              """, writer.toJSON(new Holder(new int[0], new String[0], Map.of(), 0))),
+          () -> assertEquals("""
+              {"ints": [1], "strings": [null], "map": {"a": 1}}\
+              """, writer.toJSON(new Holder(new int[] { 1 }, new String[] { null }, Map.of("a", 1), null)))
+      );
+    }
+
+    @Test
+    public void toJSONOmitDefaultsCanBeDisabled() {
+      var writer = new JSONWriter();
+      var car = new Car(null);
+      writer.omitDefaults(true);
+      assertEquals("{}", writer.toJSON(car));
+      writer.omitDefaults(false);
+      assertEquals("""
+          {"owner": null}\
+          """, writer.toJSON(car));
+    }
+  }  // end of OmitDefaults
+
+  @Nested
+  public class Codegen {
+    @JSONCodec
+    public record Point(int x, @JSONProperty("y-coord") long y, List<String> tags) { }
+
+    @JSONCodec
+    public static class Account {
+      private final String owner;
+      private final boolean active;
+
+      public Account(String owner, boolean active) {
+        this.owner = owner;
+        this.active = active;
+      }
+
+      public String getOwner() {
+        return owner;
+      }
+      public boolean isActive() {
+        return active;
+      }
+    }
+
+    @Test
+    public void generatedCodecIsAvailable() {
+      assertAll(
+          () -> assertNotNull(Utils.generatedCodec(Point.class)),
+          () -> assertNotNull(Utils.generatedCodec(Account.class)),
+          () -> assertNull(Utils.generatedCodec(Car.class))
+      );
+    }
+
+    @Test
+    public void toJSONGeneratedRecord() {
+      var writer = new JSONWriter();
+      var point = new Point(1, -2L, List.of("a", "b"));
+      assertEquals("""
+          {"x": 1, "y-coord": -2, "tags": ["a", "b"]}\
+          """, writer.toJSON(point));
+    }
+
+    @Test
+    public void toJSONGeneratedBean() {
+      var writer = new JSONWriter();
+      var account = new Account("Bob", true);
+      assertEquals("""
+          {"active": true, "owner": "Bob"}\
+          """, writer.toJSON(account));
+    }
+  }  // end of Codegen
+
   public record PersonInfo(@JSONProperty("birth-day") MonthDay birthday, AddressInfo address) { }
 
   @Nested
@@ -235,6 +1028,18 @@ public class JSONWriterTest {
           json);
     }
 
+    @Test @Tag("Q7")
+    public void toJSONRecordWithJSONProperty() {
+      record Person(@JSONProperty("first-name") String firstName, @JSONProperty("last-name") String lastName) { }
+      var writer = new JSONWriter();
+      var person = new Person("Bob", "Hunky");
+      var json = writer.toJSON(person);
+      assertEquals("""
+          {"first-name": "Bob", "last-name": "Hunky"}\
+          """,
+          json);
+    }
+
     @Test @Tag("Q7")
     public void toJSONFullExample() {
       var writer = new JSONWriter();
@@ -248,5 +1053,4 @@ public class JSONWriterTest {
     }
 
   }  // end of Q7
- */
 }
@@ -1,71 +1,104 @@
 package com.github.forax.framework.mapper;
 
 import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.file.Files;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
+import static com.github.forax.framework.mapper.JSONCursor.Token.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ToyJSONParserTest {
   private static Object asJava(String text) {
-    var visitor = new JSONVisitor() {
-      private Object result;
-      private final ArrayDeque<Object> stack = new ArrayDeque<>();
+    var visitor = new CollectingVisitor();
+    ToyJSONParser.parse(text, visitor);
+    return visitor.result;
+  }
 
-      @Override
-      @SuppressWarnings("unchecked")
-      public void value(String key, Object value) {
-        var data = stack.peek();
-        if (data instanceof Map<?,?> map) {
-          ((Map<String, Object>) map).put(key, value);
-          return;
-        }
-        if (data instanceof List<?> list) {
-          ((List<Object>) list).add(value);
-          return;
-        }
-        throw new AssertionError();
-      }
+  private static Object asJava(byte[] data) {
+    var visitor = new CollectingVisitor();
+    ToyJSONParser.parse(data, visitor);
+    return visitor.result;
+  }
 
-      @Override
-      public void startObject(String key) {
-        stack.push(new HashMap<String, Object>());
-      }
+  private static Object asJava(ByteBuffer buffer) {
+    var visitor = new CollectingVisitor();
+    ToyJSONParser.parse(buffer, visitor);
+    return visitor.result;
+  }
 
-      @Override
-      public void endObject(String key) {
-        var data = stack.pop();
-        if (stack.isEmpty()) {
-          result = data;
-        } else {
-          value(key, data);
-        }
+  private static class CollectingVisitor implements JSONVisitor {
+    private Object result;
+    private final ArrayDeque<Object> stack = new ArrayDeque<>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void value(String key, Object value) {
+      var data = stack.peek();
+      if (data instanceof Map<?,?> map) {
+        ((Map<String, Object>) map).put(key, value);
+        return;
+      }
+      if (data instanceof List<?> list) {
+        ((List<Object>) list).add(value);
+        return;
       }
+      throw new AssertionError();
+    }
 
-      @Override
-      public void startArray(String key) {
-        stack.push(new ArrayList<>());
+    @Override
+    public void startObject(String key) {
+      stack.push(new HashMap<String, Object>());
+    }
+
+    @Override
+    public void endObject(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
       }
+    }
 
-      @Override
-      public void endArray(String key) {
-        var data = stack.pop();
-        if (stack.isEmpty()) {
-          result = data;
-        } else {
-          value(key, data);
-        }
+    @Override
+    public void startArray(String key) {
+      stack.push(new ArrayList<>());
+    }
+
+    @Override
+    public void endArray(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
       }
-    };
-    ToyJSONParser.parse(text, visitor);
-    return visitor.result;
+    }
   }
 
   @Test
@@ -143,4 +176,376 @@ class ToyJSONParserTest {
         [ 13.4, null ]
         """));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void parseEscapedStrings() {
+    assertAll(
+        () -> assertEquals(List.of("a\"b", "c\\d", "e/f", "\b\f\n\r\t", "\u00e9\u0001"), asJava("""
+            [ "a\\"b", "c\\\\d", "e\\/f", "\\b\\f\\n\\r\\t", "\\u00e9\\u0001" ]
+            """)),
+        () -> assertEquals(Map.of("key\"", "value"), asJava("""
+            { "key\\"": "value" }
+            """))
+    );
+  }
+
+  @Test
+  public void parseWithoutBlanks() {
+    assertEquals(Map.of("a", List.of(1, 2.5, true), "b", Map.of()), asJava("""
+        {"a":[1,2.5,true],"b":{}}"""));
+  }
+
+  @Test
+  public void parseInvalidTexts() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> asJava("")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("{ \"foo\": nul }")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("{ \"foo\": \"bar }")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("{ \"foo\": @ }")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ \"\\x\" ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ 1 2 ]"))
+    );
+  }
+
+  @Test
+  public void parseUnicodeEscapes() {
+    assertAll(
+        () -> assertEquals(List.of("é", "\u20ac", "\uABCD"), asJava("[ \"\\u00e9\", \"\\u20AC\", \"\\uabcd\" ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ \"\\u+123\" ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ \"\\u-123\" ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ \"\\u00g0\" ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ \"\\u12\" ]"))
+    );
+  }
+
+  @Test
+  public void parseUTF8Bytes() {
+    var text = """
+        { "name": "Zoë 😀", "values": [ "€", 12, 4.5 ], "escaped": "\\u00e9\\n" }
+        """;
+    var expected = Map.of("name", "Zoë 😀", "values", List.of("€", 12, 4.5), "escaped", "é\n");
+    var bytes = text.getBytes(UTF_8);
+    var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    var slice = ByteBuffer.wrap(("xx" + text + "yy").getBytes(UTF_8), 2, bytes.length).slice();
+    assertAll(
+        () -> assertEquals(expected, asJava(bytes)),
+        () -> assertEquals(expected, asJava(ByteBuffer.wrap(bytes))),
+        () -> assertEquals(expected, asJava(direct)),
+        () -> assertEquals(0, direct.position()),
+        () -> assertEquals(expected, asJava(slice))
+    );
+  }
+
+  /**
+   * An input stream that returns at most 3 bytes at a time, to check that the tokens can be split.
+   */
+  private static InputStream trickle(byte[] data) {
+    return new ByteArrayInputStream(data) {
+      @Override
+      public synchronized int read(byte[] buffer, int offset, int length) {
+        return super.read(buffer, offset, Math.min(3, length));
+      }
+    };
+  }
+
+  private static Object asJava(InputStream input) {
+    var visitor = new CollectingVisitor();
+    ToyJSONParser.parse(input, visitor);
+    return visitor.result;
+  }
+
+  @Test
+  public void parseStreams() {
+    var text = """
+        { "name": "Zoë 😀", "values": [ "€", 12, 4.5, true, null ], "escaped": "\\u00e9\\n" }
+        """;
+    var expected = new HashMap<String, Object>(Map.of("name", "Zoë 😀", "escaped", "é\n"));
+    expected.put("values", Arrays.asList("€", 12, 4.5, true, null));
+    var bytes = text.getBytes(UTF_8);
+    var readerVisitor = new CollectingVisitor();
+    var channelVisitor = new CollectingVisitor();
+    assertAll(
+        () -> assertEquals(expected, asJava(trickle(bytes))),
+        () -> assertEquals(expected, asJava(new ByteArrayInputStream(bytes))),
+        () -> assertEquals(bytes.length - 1, ToyJSONParser.parse(new StringReader(text), readerVisitor)),
+        () -> assertEquals(expected, readerVisitor.result),
+        () -> assertEquals(bytes.length - 1, ToyJSONParser.parse(Channels.newChannel(trickle(bytes)), channelVisitor)),
+        () -> assertEquals(expected, channelVisitor.result)
+    );
+  }
+
+  @Test
+  public void parseStreamsBiggerThanTheBuffer() {
+    var longString = "é".repeat(10_000) + "\\\"" + "a".repeat(10_000);
+    var longNumber = "1" + "0".repeat(20_000) + ".5";
+    var text = "[ \"" + longString + "\", " + longNumber + ", " + "\"x\", ".repeat(5_000) + "\"end\" ]";
+    var result = (List<?>) asJava(trickle(text.getBytes(UTF_8)));
+    var readerVisitor = new CollectingVisitor();
+    ToyJSONParser.parse(new StringReader(text), readerVisitor);
+    assertAll(
+        () -> assertEquals(5_003, result.size()),
+        () -> assertEquals("é".repeat(10_000) + "\"" + "a".repeat(10_000), result.getFirst()),
+        () -> assertEquals(new BigDecimal(longNumber), result.get(1)),
+        () -> assertEquals("end", result.getLast()),
+        () -> assertEquals(result, readerVisitor.result)
+    );
+  }
+
+  @Test
+  public void parseInvalidStreams() {
+    var e = assertThrows(IllegalStateException.class,
+        () -> asJava(trickle(("[" + " ".repeat(10_000) + "1 2 ]").getBytes(UTF_8))));
+    var failing = new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("oops");
+      }
+    };
+    assertAll(
+        () -> assertTrue(e.getMessage().endsWith("at 10003"), e.getMessage()),
+        () -> assertThrows(IllegalStateException.class, () -> asJava(trickle("[ 1, 2".getBytes(UTF_8)))),
+        () -> assertThrows(IllegalStateException.class, () -> asJava(new ByteArrayInputStream(new byte[0]))),
+        () -> assertThrows(UncheckedIOException.class, () -> asJava(failing))
+    );
+  }
+
+  @Test
+  public void parseNonBlockingChannel() throws IOException {
+    var pipe = Pipe.open();
+    try (var source = pipe.source()) {
+      source.configureBlocking(false);
+      assertThrows(IllegalArgumentException.class, () -> ToyJSONParser.parse(source, new CollectingVisitor()));
+    } finally {
+      pipe.sink().close();
+    }
+  }
+
+  @Test
+  public void parseFiles() throws IOException {
+    var text = "[ \"Zoë 😀\", " + "{ \"foo\": 12345, \"bar\": [ true, false ] }, ".repeat(1_000) + "1.5 ]";
+    var path = Files.createTempFile("toy", ".json");
+    try {
+      Files.writeString(path, text);
+      var fileVisitor = new CollectingVisitor();
+      var size = ToyJSONParser.parse(path, fileVisitor);
+      assertAll(
+          () -> assertEquals(Files.size(path), size),
+          () -> assertEquals(asJava(text), fileVisitor.result),
+          () -> assertThrows(UncheckedIOException.class, () -> ToyJSONParser.parse(path.resolveSibling("missing.json"), new CollectingVisitor()))
+      );
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void parseNumbers() {
+    var list = (List<?>) asJava("""
+        [ 0, -0, 12, -12, 2147483648, -9223372036854775808, 9223372036854775808, -12345678901234567890123,
+          1.5, -0.25, 1e3, 1E-3, -2.5e+2, 0.1, 123456789.123456789, 1.7976931348623157e308, 4.9e-324, 1e400,
+          3.14159265358979323846264338327950288 ]
+        """);
+    assertEquals(List.of(
+        0, 0, 12, -12, 2_147_483_648L, Long.MIN_VALUE, new BigDecimal("9223372036854775808"), new BigDecimal("-12345678901234567890123"),
+        1.5, -0.25, 1000.0, 0.001, -250.0, 0.1, 123456789.123456789, Double.MAX_VALUE, Double.MIN_VALUE, Double.POSITIVE_INFINITY,
+        new BigDecimal("3.14159265358979323846264338327950288")), list);
+  }
+
+  @Test
+  public void parseDoublesLikeParseDouble() {
+    var random = new Random(0);
+    for (var i = 0; i < 10_000; i++) {
+      var significand = random.nextLong(1L << 53);
+      var text = switch (i % 4) {
+        case 0 -> significand + "e" + (random.nextInt(60) - 30);
+        case 1 -> "0." + significand;
+        case 2 -> Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+        default -> significand / 1_000 + "." + random.nextInt(1_000);
+      };
+      var list = (List<?>) asJava("[" + text + "]");
+      assertEquals(Double.parseDouble(text), list.getFirst(), text);
+    }
+  }
+
+  @Test
+  public void parseNineteenDigitSignificands() {
+    var texts = List.of("0.9999999999999999999", "9999999999999999999e0", "-9999999999999999999e1",
+        "1234567890123456789e-5", "922337203685477580.7", "0.1234567890123456789e3");
+    for (var text : texts) {
+      var list = (List<?>) asJava("[" + text + "]");
+      assertEquals(Double.parseDouble(text), list.getFirst(), text);
+      try (var cursor = JSONCursor.of("[" + text + "]")) {
+        cursor.nextToken();
+        cursor.nextToken();
+        assertEquals(Double.parseDouble(text), cursor.getDouble(), text);
+      }
+    }
+  }
+
+  @Test
+  public void parseInvalidNumbers() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ - ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ . ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ 1e ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ 1e+ ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ 1-2 ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ --1 ]"))
+    );
+  }
+
+  @Test
+  public void parseKnownKeys() {
+    var name = new String("name");  // not the interned string
+    var keyTable = new KeyTable(List.of(name, "age", "Zoë", "name"));
+    var keys = new ArrayList<String>();
+    ToyJSONParser.parse("""
+        { "name": "Bob", "age": 12, "Zoë": true, "unknown": 1, "n\\u0061me": 2, "nam": 3, "": 4 }
+        """, new CollectingVisitor() {
+      @Override
+      public void value(String key, Object value) {
+        keys.add(key);
+        super.value(key, value);
+      }
+
+      @Override
+      public KeyTable keyTable() {
+        return keyTable;
+      }
+    });
+    assertAll(
+        () -> assertEquals(List.of("name", "age", "Zoë", "unknown", "name", "nam", ""), keys),
+        () -> assertSame(name, keys.get(0)),
+        () -> assertNotSame(name, keys.get(4)),
+        () -> assertSame(keyTable.lookup("age".getBytes(UTF_8), 0, 3), keys.get(1)),
+        () -> assertNull(KeyTable.EMPTY.lookup(new byte[0], 0, 0))
+    );
+  }
+
+  @Nested
+  public class Cursor {
+    private static List<Object> tokens(JSONCursor cursor) {
+      var tokens = new ArrayList<Object>();
+      JSONCursor.Token token;
+      while ((token = cursor.nextToken()) != null) {
+        tokens.add(token);
+        switch (token) {
+          case KEY, STRING -> tokens.add(cursor.getStringView().toString());
+          case INTEGER -> tokens.add(cursor.getLong());
+          case DOUBLE -> tokens.add(cursor.getDouble());
+          default -> {}
+        }
+      }
+      return tokens;
+    }
+
+    @Test
+    public void nextToken() {
+      var text = """
+          { "name": "Zoë", "values": [ 12, 4.5, true, false, null, {}, [] ], "key": "value" }
+          """;
+      var expected = List.<Object>of(
+          START_OBJECT, KEY, "name", STRING, "Zoë",
+          KEY, "values", START_ARRAY, INTEGER, 12L, DOUBLE, 4.5, TRUE, FALSE, NULL,
+          START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, END_ARRAY,
+          KEY, "key", STRING, "value", END_OBJECT);
+      try(var cursor = JSONCursor.of(text);
+          var streamCursor = JSONCursor.of(trickle(text.getBytes(UTF_8)))) {
+        assertAll(
+            () -> assertEquals(expected, tokens(cursor)),
+            () -> assertNull(cursor.nextToken()),
+            () -> assertEquals(expected, tokens(streamCursor))
+        );
+      }
+    }
+
+    @Test
+    public void skipChildren() {
+      var text = """
+          { "skipped": { "a": [ 1, { "b": 2 } ], "c": "d" }, "age": 42, "ignored": 3 }
+          """;
+      var age = -1;
+      try(var cursor = JSONCursor.of(text)) {
+        assertEquals(START_OBJECT, cursor.nextToken());
+        while (cursor.nextToken() == KEY) {
+          if ("age".contentEquals(cursor.getStringView())) {
+            cursor.nextToken();
+            age = cursor.getInt();
+          } else {
+            cursor.nextToken();
+            cursor.skipChildren();
+          }
+        }
+        assertEquals(END_OBJECT, cursor.currentToken());
+      }
+      assertEquals(42, age);
+    }
+
+    @Test
+    public void getters() {
+      try(var cursor = JSONCursor.of("[ \"a\\nb\", \"\u20ac\", 9223372036854775807, 3000000000, 92233720368547758070 ]")) {
+        cursor.nextToken();
+        assertAll(
+            () -> assertThrows(IllegalStateException.class, cursor::getInt),
+            () -> assertEquals(STRING, cursor.nextToken()),
+            () -> assertEquals("a\nb", cursor.getStringView().toString()),
+            () -> assertEquals("a\nb", cursor.getString()),
+            () -> assertEquals(STRING, cursor.nextToken()),
+            () -> assertEquals("\u20ac", cursor.getStringView().toString()),
+            () -> assertEquals(INTEGER, cursor.nextToken()),
+            () -> assertEquals(Long.MAX_VALUE, cursor.getLong()),
+            () -> assertEquals(INTEGER, cursor.nextToken()),
+            () -> assertThrows(IllegalStateException.class, cursor::getInt),
+            () -> assertEquals(3_000_000_000.0, cursor.getDouble()),
+            () -> assertEquals(INTEGER, cursor.nextToken()),
+            () -> assertThrows(IllegalStateException.class, cursor::getLong),
+            () -> assertThrows(IllegalStateException.class, cursor::getString)
+        );
+      }
+    }
+
+    @Test
+    public void stringView() {
+      try(var cursor = JSONCursor.of("[ \"hello\", \"world!\" ]")) {
+        cursor.nextToken();
+        cursor.nextToken();
+        var view = cursor.getStringView();
+        assertAll(
+            () -> assertEquals(5, view.length()),
+            () -> assertEquals('e', view.charAt(1)),
+            () -> assertEquals("ell", view.subSequence(1, 4)),
+            () -> assertThrows(IndexOutOfBoundsException.class, () -> view.charAt(5))
+        );
+        cursor.nextToken();
+        assertEquals("world!", cursor.getStringView().toString());
+      }
+    }
+
+    @Test
+    public void invalidTexts() {
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> tokens(JSONCursor.of("12"))),
+          () -> assertThrows(IllegalStateException.class, () -> tokens(JSONCursor.of("[ 1 2 ]"))),
+          () -> assertThrows(IllegalStateException.class, () -> tokens(JSONCursor.of("[ 1, ]"))),
+          () -> assertThrows(IllegalStateException.class, () -> tokens(JSONCursor.of("{ \"a\" 1 }"))),
+          () -> assertThrows(IllegalStateException.class, () -> tokens(JSONCursor.of("{ 1: 1 }"))),
+          () -> assertThrows(IllegalStateException.class, () -> tokens(JSONCursor.of("{ \"a\": 1 ]"))),
+          () -> assertThrows(IllegalStateException.class, () -> tokens(JSONCursor.of("[ 1"))),
+          () -> assertThrows(NullPointerException.class, () -> JSONCursor.of((String) null))
+      );
+    }
+
+    @Test
+    public void files() throws IOException {
+      var path = Files.createTempFile("cursor", ".json");
+      try {
+        Files.writeString(path, "[ \"Zoë\", 1 ]");
+        try(var cursor = JSONCursor.of(path)) {
+          assertEquals(List.of(START_ARRAY, STRING, "Zoë", INTEGER, 1L, END_ARRAY), tokens(cursor));
+        }
+      } finally {
+        Files.delete(path);
+      }
+    }
+  }  // end of Cursor
+}